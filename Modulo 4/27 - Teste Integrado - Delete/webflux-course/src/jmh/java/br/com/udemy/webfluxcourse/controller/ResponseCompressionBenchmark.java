@@ -0,0 +1,144 @@
+package br.com.udemy.webfluxcourse.controller;
+
+import br.com.udemy.webfluxcourse.model.response.UserResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.compression.Brotli;
+import io.netty.handler.codec.compression.CompressionOptions;
+import io.netty.handler.codec.compression.Zstd;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpContentCompressor;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.ReferenceCountUtil;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ResponseCompressionBenchmark {
+
+    @Param({"identity", "gzip", "br", "zstd"})
+    public String encoding;
+
+    @Param({"ndjson", "json"})
+    public String format;
+
+    @Param({"1", "128"})
+    public int elementsPerWrite;
+
+    @Param({"10000"})
+    public int users;
+
+    private List<byte[]> chunks;
+    private String contentType;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class BodyCounters {
+        public long responses;
+        public long bodyBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            responses = 0;
+            bodyBytes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        if (encoding.equals("br") && !Brotli.isAvailable() || encoding.equals("zstd") && !Zstd.isAvailable()) {
+            throw new IllegalStateException("No native codec available for " + encoding);
+        }
+
+        final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+        final Instant createdAt = Instant.parse("2024-03-13T12:00:00Z");
+        final List<UserResponse> responses = IntStream.range(0, users)
+                .mapToObj(index -> new UserResponse(
+                        new ObjectId().toHexString(),
+                        "Benchmark User " + index,
+                        "benchmark.user." + index + "@mail.com",
+                        createdAt,
+                        createdAt.plusSeconds(index)
+                ))
+                .toList();
+
+        chunks = new ArrayList<>();
+        if (format.equals("ndjson")) {
+            contentType = "application/x-ndjson";
+            final var chunk = new ByteArrayOutputStream();
+            for (int index = 0; index < responses.size(); index++) {
+                chunk.write(mapper.writeValueAsBytes(responses.get(index)));
+                chunk.write('\n');
+                if ((index + 1) % elementsPerWrite == 0 || index + 1 == responses.size()) {
+                    chunks.add(chunk.toByteArray());
+                    chunk.reset();
+                }
+            }
+        } else {
+            contentType = "application/json";
+            chunks.add(mapper.writeValueAsBytes(responses));
+        }
+    }
+
+    @Benchmark
+    public long writeResponse(final BodyCounters counters) {
+        final EmbeddedChannel channel = new EmbeddedChannel(new HttpContentCompressor((CompressionOptions[]) null));
+
+        final var request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/users");
+        request.headers().set(HttpHeaderNames.ACCEPT_ENCODING, encoding);
+        channel.writeInbound(request);
+
+        final var response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        response.headers()
+                .set(HttpHeaderNames.CONTENT_TYPE, contentType)
+                .set(HttpHeaderNames.TRANSFER_ENCODING, HttpHeaderValues.CHUNKED);
+        channel.write(response);
+        for (byte[] chunk : chunks) {
+            channel.writeAndFlush(new DefaultHttpContent(Unpooled.wrappedBuffer(chunk)));
+        }
+        channel.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+
+        long bytes = 0;
+        Object message;
+        while ((message = channel.readOutbound()) != null) {
+            if (message instanceof HttpContent content) {
+                bytes += content.content().readableBytes();
+            }
+            ReferenceCountUtil.release(message);
+        }
+        channel.finishAndReleaseAll();
+
+        counters.responses++;
+        counters.bodyBytes += bytes;
+        return bytes;
+    }
+}
@@ -0,0 +1,66 @@
+package br.com.udemy.webfluxcourse.controller.exception;
+
+import br.com.udemy.webfluxcourse.controller.UserController;
+import br.com.udemy.webfluxcourse.metrics.UserMetrics;
+import br.com.udemy.webfluxcourse.model.request.UserRequest;
+import br.com.udemy.webfluxcourse.service.exception.ObjectNotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.tracing.Tracer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.core.MethodParameter;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.FieldError;
+import org.springframework.web.bind.support.WebExchangeBindException;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ErrorBodyBenchmark {
+
+    private final ControllerExceptionHandler handler = new ControllerExceptionHandler(
+            new UserMetrics(new SimpleMeterRegistry()),
+            Tracer.NOOP
+    );
+
+    private final MockServerHttpRequest request = MockServerHttpRequest.post("/users").build();
+
+    private final ObjectNotFoundException notFound = new ObjectNotFoundException(
+            "Object not found. Id: 65f1c0a2e4b0a1b2c3d4e5f1, Type: User"
+    );
+
+    private WebExchangeBindException bindException;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        UserRequest userRequest = new UserRequest(" Rafael", "rafaelmail.com", "123");
+        BeanPropertyBindingResult bindingResult = new BeanPropertyBindingResult(userRequest, "userRequest");
+        bindingResult.addError(new FieldError(
+                "userRequest", "name", "field cannot have blank space at the beginning or at end"
+        ));
+        bindingResult.addError(new FieldError("userRequest", "email", "invalid email"));
+
+        MethodParameter parameter = new MethodParameter(
+                UserController.class.getMethod("save", UserRequest.class), 0
+        );
+        bindException = new WebExchangeBindException(parameter, bindingResult);
+    }
+
+    @Benchmark
+    public StandardError objectNotFound() {
+        return handler.objectNotFoundException(notFound, request).getBody().block();
+    }
+
+    @Benchmark
+    public ValidationError validationError() {
+        return handler.validationError(bindException, request).getBody().block();
+    }
+}
@@ -0,0 +1,72 @@
+package br.com.udemy.webfluxcourse.controller.exception;
+
+import br.com.udemy.webfluxcourse.model.response.UserResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SerializationBenchmark {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private final UserResponse userResponse = new UserResponse(
+            "65f1c0a2e4b0a1b2c3d4e5f1", "Rafael", "rafael@mail.com",
+            Instant.parse("2024-03-13T12:00:00Z"), Instant.parse("2024-03-13T12:30:00Z")
+    );
+
+    private final StandardError standardError = StandardError.builder()
+            .timestamp(LocalDateTime.now())
+            .path("/users/65f1c0a2e4b0a1b2c3d4e5f1")
+            .status(NOT_FOUND.value())
+            .error(NOT_FOUND.getReasonPhrase())
+            .message("Object not found. Id: 65f1c0a2e4b0a1b2c3d4e5f1, Type: User")
+            .traceId("65f1c0a2e4b0a1b2c3d4e5f165f1c0a2")
+            .build();
+
+    private final ValidationError validationError = buildValidationError();
+
+    @Benchmark
+    public byte[] userResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(userResponse);
+    }
+
+    @Benchmark
+    public byte[] standardError() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(standardError);
+    }
+
+    @Benchmark
+    public byte[] validationError() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(validationError);
+    }
+
+    private static ValidationError buildValidationError() {
+        ValidationError error = new ValidationError(
+                LocalDateTime.now(),
+                "/users",
+                BAD_REQUEST.value(),
+                "Validation Error",
+                "Error on validation attributes",
+                "65f1c0a2e4b0a1b2c3d4e5f165f1c0a2"
+        );
+        error.addError("name", "field cannot have blank space at the beginning or at end");
+        error.addError("email", "invalid email");
+        return error;
+    }
+}
@@ -0,0 +1,40 @@
+package br.com.udemy.webfluxcourse.mapper;
+
+import br.com.udemy.webfluxcourse.entity.User;
+import br.com.udemy.webfluxcourse.model.request.UserRequest;
+import br.com.udemy.webfluxcourse.model.response.UserResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UserMapperBenchmark {
+
+    private final UserMapper mapper = new UserMapperImpl();
+
+    private final UserRequest request = new UserRequest("Rafael", "rafael@mail.com", "123");
+
+    private final User entity = User.builder()
+            .id("65f1c0a2e4b0a1b2c3d4e5f1")
+            .name("Rafael")
+            .email("rafael@mail.com")
+            .password("123")
+            .build();
+
+    @Benchmark
+    public User toEntity() {
+        return mapper.toEntity(request);
+    }
+
+    @Benchmark
+    public UserResponse toResponse() {
+        return mapper.toResponse(entity);
+    }
+}
@@ -0,0 +1,143 @@
+package br.com.udemy.webfluxcourse.repository;
+
+import br.com.udemy.webfluxcourse.config.MongoClientConfig;
+import br.com.udemy.webfluxcourse.config.ResilienceProperties;
+import br.com.udemy.webfluxcourse.entity.User;
+import br.com.udemy.webfluxcourse.metrics.UserMetrics;
+import br.com.udemy.webfluxcourse.resilience.MongoCallPolicies;
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import com.sun.management.OperatingSystemMXBean;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+// Needs a running mongod (benchmark.mongo.uri, defaults to localhost:27017):
+// ./gradlew jmh -PjmhIncludes=WireCompressionBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class WireCompressionBenchmark {
+
+    private static final String URI = System.getProperty("benchmark.mongo.uri", "mongodb://localhost:27017");
+    private static final String DATABASE = "webflux-course-benchmark";
+
+    private static final Document NETWORK_STATUS = new Document("serverStatus", 1)
+            .append("metrics", 0)
+            .append("wiredTiger", 0)
+            .append("tcmalloc", 0)
+            .append("locks", 0)
+            .append("repl", 0);
+
+    @Param({"none", "zstd", "snappy", "zlib"})
+    public String compressor;
+
+    @Param({"10000"})
+    public int users;
+
+    @Param({"256"})
+    public int batchSize;
+
+    private final OperatingSystemMXBean os = (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+
+    private MongoClient client;
+    private UserRepository repository;
+    private long statusOverhead;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class WireCounters {
+        public long streams;
+        public long wireBytes;
+        public long cpuNanos;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            streams = 0;
+            wireBytes = 0;
+            cpuNanos = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final var settings = MongoClientSettings.builder().applyConnectionString(new ConnectionString(URI));
+        if (!compressor.equals("none")) {
+            settings.compressorList(MongoClientConfig.compressors(List.of(compressor)));
+        }
+        client = MongoClients.create(settings.build());
+
+        final var template = new ReactiveMongoTemplate(client, DATABASE);
+        final var meterRegistry = new SimpleMeterRegistry();
+        final var policy = new ResilienceProperties.Policy(Duration.ofSeconds(30), 256, 50, 50, 20, Duration.ofSeconds(10));
+        repository = new UserRepository(template, new UserMetrics(meterRegistry), new MongoCallPolicies(
+                new ResilienceProperties(false, policy, policy, policy), meterRegistry
+        ));
+
+        template.dropCollection(User.class).block();
+        Flux.fromStream(IntStream.range(0, users).mapToObj(WireCompressionBenchmark::user))
+                .buffer(1000)
+                .concatMap(repository::insertAll)
+                .blockLast();
+
+        final long firstStatus = bytesOut();
+        statusOverhead = bytesOut() - firstStatus;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Mono.from(client.getDatabase(DATABASE).drop()).block();
+        client.close();
+    }
+
+    @Benchmark
+    public long findAll(final WireCounters counters) {
+        final long bytesBefore = bytesOut();
+        final long cpuBefore = os.getProcessCpuTime();
+
+        final Long count = repository.findAll(batchSize).count().block();
+
+        counters.cpuNanos += os.getProcessCpuTime() - cpuBefore;
+        counters.wireBytes += bytesOut() - bytesBefore - statusOverhead;
+        counters.streams++;
+        return count;
+    }
+
+    private long bytesOut() {
+        final Document status = Mono.from(client.getDatabase("admin").runCommand(NETWORK_STATUS)).block();
+        final Document network = status.get("network", Document.class);
+        final Number physical = network.get("physicalBytesOut", Number.class);
+        return (physical != null ? physical : network.get("bytesOut", Number.class)).longValue();
+    }
+
+    private static User user(final int index) {
+        return User.builder()
+                .id(new ObjectId().toHexString())
+                .name("Benchmark User " + index)
+                .email("benchmark.user." + index + "@mail.com")
+                .password("$2a$10$" + Integer.toHexString(index * 31) + "benchmarkpasswordhash")
+                .build();
+    }
+}
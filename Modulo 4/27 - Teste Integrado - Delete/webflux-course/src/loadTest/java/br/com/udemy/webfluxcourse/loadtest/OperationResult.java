@@ -0,0 +1,37 @@
+package br.com.udemy.webfluxcourse.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.time.Duration;
+
+public record OperationResult(
+        String operation,
+        long requests,
+        long errors,
+        double errorRate,
+        double throughput,
+        double p50Millis,
+        double p99Millis,
+        double p999Millis,
+        double maxMillis
+) {
+
+    public static OperationResult of(String operation, Histogram histogram, long errors, Duration elapsed) {
+        long requests = histogram.getTotalCount() + errors;
+        return new OperationResult(
+                operation,
+                requests,
+                errors,
+                requests == 0 ? 0 : (double) errors / requests,
+                requests / Math.max(elapsed.toNanos() / 1_000_000_000d, 1e-9),
+                toMillis(histogram.getValueAtPercentile(50)),
+                toMillis(histogram.getValueAtPercentile(99)),
+                toMillis(histogram.getValueAtPercentile(99.9)),
+                toMillis(histogram.getMaxValue())
+        );
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000d;
+    }
+}
@@ -0,0 +1,154 @@
+package br.com.udemy.webfluxcourse.loadtest;
+
+import br.com.udemy.webfluxcourse.model.request.UserRequest;
+import br.com.udemy.webfluxcourse.model.response.UserResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
+
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+class UserLoadTest {
+
+    private static final MongoServer MONGO_SERVER = new MongoServer(new MemoryBackend());
+    private static final InetSocketAddress MONGO_ADDRESS = MONGO_SERVER.bind();
+
+    private static final int CONCURRENCY = Integer.getInteger("loadtest.concurrency", 64);
+    private static final int REQUESTS = Integer.getInteger("loadtest.requests", 2_000);
+    private static final double MAX_ERROR_RATE = Double.parseDouble(System.getProperty("loadtest.maxErrorRate", "0.0"));
+    private static final Path REPORT_DIR = Path.of(System.getProperty("loadtest.reportDir", "build/reports/load-test"));
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @DynamicPropertySource
+    static void mongoProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", () -> String.format(
+                "mongodb://%s:%d/webflux-course", MONGO_ADDRESS.getHostString(), MONGO_ADDRESS.getPort()
+        ));
+        registry.add("users.limits.enabled", () -> "false");
+        // change streams need a replica set, which mongo-java-server does not emulate
+        registry.add("users.changes.enabled", () -> "false");
+        // mongo-java-server answers sorted pages by scanning the collection, well above the production read timeout
+        registry.add("users.resilience.read.timeout", () -> "15s");
+    }
+
+    @AfterAll
+    static void stopMongo() {
+        MONGO_SERVER.shutdownNow();
+    }
+
+    @Test
+    void loadTest() throws IOException {
+        final WebClient client = WebClient.builder().baseUrl("http://localhost:" + port).build();
+        final List<OperationResult> results = new ArrayList<>();
+        final long runId = System.currentTimeMillis();
+
+        results.add(run("POST /users", REQUESTS, i -> client.post().uri("/users")
+                .contentType(APPLICATION_JSON)
+                .bodyValue(new UserRequest("Load User " + i, "load-" + runId + "-" + i + "@mail.com", "123456"))
+                .retrieve()
+                .toBodilessEntity()));
+
+        final List<String> ids = client.get().uri("/users")
+                .accept(APPLICATION_NDJSON)
+                .retrieve()
+                .bodyToFlux(UserResponse.class)
+                .map(UserResponse::id)
+                .collectList()
+                .block();
+        Assertions.assertNotNull(ids);
+        Assertions.assertFalse(ids.isEmpty(), "no users were created");
+
+        results.add(run("GET /users/{id}", REQUESTS, i -> client.get().uri("/users/{id}", ids.get(i % ids.size()))
+                .retrieve()
+                .bodyToMono(UserResponse.class)));
+
+        results.add(run("GET /users?limit=", REQUESTS, i -> client.get().uri("/users?limit=20")
+                .accept(APPLICATION_JSON)
+                .retrieve()
+                .bodyToMono(String.class)));
+
+        results.add(run("PATCH /users/{id}", REQUESTS, i -> client.patch().uri("/users/{id}", ids.get(i % ids.size()))
+                .contentType(APPLICATION_JSON)
+                .bodyValue(new UserRequest("Patched User " + i, null, null))
+                .retrieve()
+                .bodyToMono(UserResponse.class)));
+
+        results.add(run("DELETE /users/{id}", ids.size(), i -> client.delete().uri("/users/{id}", ids.get(i))
+                .retrieve()
+                .toBodilessEntity()));
+
+        report(results);
+
+        for (OperationResult result : results) {
+            Assertions.assertTrue(result.errorRate() <= MAX_ERROR_RATE,
+                    () -> String.format("%s error rate %.4f exceeds %.4f", result.operation(), result.errorRate(), MAX_ERROR_RATE));
+        }
+    }
+
+    private OperationResult run(String operation, int requests, IntFunction<Mono<?>> call) {
+        final Histogram histogram = new ConcurrentHistogram(TimeUnit.MINUTES.toNanos(1), 3);
+        final AtomicLong errors = new AtomicLong();
+        final long start = System.nanoTime();
+
+        Flux.range(0, requests)
+                .flatMap(i -> Mono.defer(() -> {
+                    final long requestStart = System.nanoTime();
+                    return call.apply(i)
+                            .doOnSuccess(ignored -> histogram.recordValue(Math.min(
+                                    System.nanoTime() - requestStart, histogram.getHighestTrackableValue())))
+                            .doOnError(ex -> errors.incrementAndGet())
+                            .onErrorResume(ex -> Mono.empty());
+                }), CONCURRENCY)
+                .blockLast();
+
+        return OperationResult.of(operation, histogram, errors.get(), Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private void report(List<OperationResult> results) throws IOException {
+        final var table = new StringBuilder()
+                .append(String.format("Load test: concurrency=%d, requests=%d%n", CONCURRENCY, REQUESTS))
+                .append(String.format("%-20s %8s %8s %10s %10s %10s %10s%n",
+                        "operation", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms"));
+        for (OperationResult result : results) {
+            table.append(String.format("%-20s %8d %8d %10.1f %10.2f %10.2f %10.2f%n",
+                    result.operation(), result.requests(), result.errors(), result.throughput(),
+                    result.p50Millis(), result.p99Millis(), result.p999Millis()));
+        }
+
+        Files.createDirectories(REPORT_DIR);
+        Files.writeString(REPORT_DIR.resolve("results.txt"), table);
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(REPORT_DIR.resolve("results.json").toFile(), results);
+    }
+}
@@ -0,0 +1,54 @@
+package br.com.udemy.webfluxcourse.cache;
+
+import br.com.udemy.webfluxcourse.changes.UserChangeListener;
+import br.com.udemy.webfluxcourse.config.CacheProperties;
+import br.com.udemy.webfluxcourse.entity.User;
+import br.com.udemy.webfluxcourse.model.UserChange;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Function;
+
+@Component
+public class CaffeineUserCache implements UserCache, UserChangeListener {
+
+    private final AsyncCache<String, User> cache;
+
+    public CaffeineUserCache(final CacheProperties properties, final MeterRegistry meterRegistry) {
+        this.cache = CaffeineCacheMetrics.monitor(
+                meterRegistry,
+                Caffeine.newBuilder()
+                        .maximumSize(properties.maximumSize())
+                        .expireAfterWrite(properties.ttl())
+                        .recordStats()
+                        .<String, User>buildAsync(),
+                "users"
+        );
+    }
+
+    @Override
+    public Mono<User> get(final String id, final Function<String, Mono<User>> loader) {
+        return Mono.deferContextual(context -> Mono.fromFuture(
+                cache.get(id, (key, executor) -> loader.apply(key).contextWrite(context).toFuture()), true
+        ));
+    }
+
+    @Override
+    public Mono<Void> evict(final String id) {
+        return Mono.fromRunnable(() -> cache.synchronous().invalidate(id));
+    }
+
+    @Override
+    public Mono<Void> onChange(final UserChange change) {
+        return change.id() == null || change.type() == UserChange.Type.INSERT ? Mono.empty() : evict(change.id());
+    }
+
+    @Override
+    public Mono<Void> onReset() {
+        return Mono.fromRunnable(() -> cache.synchronous().invalidateAll());
+    }
+}
@@ -0,0 +1,13 @@
+package br.com.udemy.webfluxcourse.cache;
+
+import br.com.udemy.webfluxcourse.entity.User;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Function;
+
+public interface UserCache {
+
+    Mono<User> get(final String id, final Function<String, Mono<User>> loader);
+
+    Mono<Void> evict(final String id);
+}
@@ -0,0 +1,257 @@
+package br.com.udemy.webfluxcourse.changes;
+
+import br.com.udemy.webfluxcourse.config.ChangeStreamProperties;
+import br.com.udemy.webfluxcourse.model.UserChange;
+import br.com.udemy.webfluxcourse.repository.UserStore;
+import br.com.udemy.webfluxcourse.service.exception.ChangeFeedUnavailableException;
+import br.com.udemy.webfluxcourse.service.exception.ResumeTokenExpiredException;
+import com.mongodb.MongoServerException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Component
+public class UserChangeFeed implements SmartLifecycle {
+
+    private static final Set<Integer> HISTORY_LOST_CODES = Set.of(260, 280, 286);
+
+    private final UserStore repository;
+    private final List<UserChangeListener> listeners;
+    private final ChangeStreamProperties properties;
+    private final Path tokenFile;
+    private final MeterRegistry meterRegistry;
+    private final Counter reconnects;
+    private final Counter resets;
+    private final Counter overflow;
+    private final Counter checkpointFailures;
+    private final Deque<UserChange> history = new ArrayDeque<>();
+    private final Sinks.Many<UserChange> broadcast = Sinks.many().multicast().directBestEffort();
+    private final AtomicInteger subscribers = new AtomicInteger();
+
+    private volatile String resumeToken;
+    private volatile String persistedToken;
+    private volatile boolean subscribedBefore;
+    private volatile Disposable subscription;
+    private volatile Disposable checkpoints;
+
+    public UserChangeFeed(
+            final UserStore repository,
+            final List<UserChangeListener> listeners,
+            final ChangeStreamProperties properties,
+            final MeterRegistry meterRegistry
+    ) {
+        this.repository = repository;
+        this.listeners = listeners;
+        this.properties = properties;
+        this.tokenFile = Path.of(properties.resumeTokenFile());
+        this.meterRegistry = meterRegistry;
+        this.reconnects = Counter.builder("users.changes.reconnects")
+                .description("Change stream subscriptions re-opened after an error or an invalidate")
+                .register(meterRegistry);
+        this.resets = Counter.builder("users.changes.resets")
+                .description("Times listeners dropped their state because changes could have been missed")
+                .register(meterRegistry);
+        this.overflow = Counter.builder("users.changes.subscriber.overflow")
+                .description("Changes that did not fit a subscriber buffer")
+                .tag("policy", properties.overflow().name().toLowerCase())
+                .register(meterRegistry);
+        this.checkpointFailures = Counter.builder("users.changes.checkpoint.failures")
+                .description("Resume token checkpoints that could not be written")
+                .register(meterRegistry);
+        meterRegistry.gauge("users.changes.subscribers", subscribers);
+    }
+
+    public boolean isEnabled() {
+        return properties.enabled();
+    }
+
+    @Override
+    public synchronized void start() {
+        if (!isEnabled() || isRunning()) {
+            return;
+        }
+        try {
+            resumeToken = Files.exists(tokenFile) ? Files.readString(tokenFile, StandardCharsets.UTF_8) : null;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        persistedToken = resumeToken;
+
+        subscription = Flux.defer(this::watch)
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, properties.minBackoff())
+                        .maxBackoff(properties.maxBackoff())
+                        .transientErrors(true)
+                        .doBeforeRetry(signal -> reconnects.increment()))
+                .repeatWhen(completed -> completed
+                        .doOnNext(ignored -> reconnects.increment())
+                        .delayElements(properties.minBackoff()))
+                .subscribe();
+        checkpoints = Flux.interval(properties.checkpointInterval(), Schedulers.boundedElastic())
+                .onBackpressureDrop()
+                .subscribe(tick -> checkpoint());
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!isRunning()) {
+            return;
+        }
+        subscription.dispose();
+        checkpoints.dispose();
+        subscription = null;
+        checkpoints = null;
+        checkpoint();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return subscription != null;
+    }
+
+    public Flux<UserChange> subscribe(final String resumeToken) {
+        if (!isEnabled()) {
+            return Flux.error(new ChangeFeedUnavailableException("User change feed is disabled"));
+        }
+
+        final Flux<UserChange> changes = Flux.create(sink -> {
+            synchronized (history) {
+                if (resumeToken != null) {
+                    final List<UserChange> missed = since(resumeToken);
+                    if (missed == null) {
+                        sink.error(new ResumeTokenExpiredException(String.format(
+                                "Resume token is outside the last %d changes: %s", properties.historySize(), resumeToken
+                        )));
+                        return;
+                    }
+                    missed.forEach(sink::next);
+                }
+                sink.onDispose(broadcast.asFlux().subscribe(sink::next, sink::error, sink::complete));
+            }
+        }, FluxSink.OverflowStrategy.BUFFER);
+
+        return changes.onBackpressureBuffer(
+                        properties.subscriberBuffer(),
+                        dropped -> overflow.increment(),
+                        properties.overflow() == ChangeStreamProperties.Overflow.DROP_OLDEST
+                                ? BufferOverflowStrategy.DROP_OLDEST
+                                : BufferOverflowStrategy.ERROR
+                )
+                .doOnSubscribe(subscription -> subscribers.incrementAndGet())
+                .doFinally(signal -> subscribers.decrementAndGet());
+    }
+
+    private Flux<UserChange> watch() {
+        final String token = resumeToken;
+        final Mono<Void> reset = token == null && subscribedBefore ? reset() : Mono.empty();
+        subscribedBefore = true;
+
+        return reset.thenMany(repository.watch(token))
+                .onErrorResume(this::historyLost, ex -> {
+                    resumeToken = null;
+                    return Flux.error(ex);
+                })
+                .concatMap(change -> dispatch(change).thenReturn(change));
+    }
+
+    private Mono<Void> dispatch(final UserChange change) {
+        meterRegistry.counter("users.changes.events", "type", change.type().name().toLowerCase()).increment();
+        if (change.type() == UserChange.Type.INVALIDATE) {
+            resumeToken = null;
+            return reset();
+        }
+
+        return Flux.fromIterable(listeners)
+                .concatMap(listener -> listener.onChange(change))
+                .then(Mono.fromRunnable(() -> {
+                    resumeToken = change.resumeToken();
+                    publish(change);
+                }));
+    }
+
+    private Mono<Void> reset() {
+        return Flux.fromIterable(listeners)
+                .concatMap(UserChangeListener::onReset)
+                .then(Mono.fromRunnable(() -> {
+                    resets.increment();
+                    publish(new UserChange(UserChange.Type.INVALIDATE, null, null, null));
+                }));
+    }
+
+    private void publish(final UserChange change) {
+        synchronized (history) {
+            if (change.resumeToken() == null) {
+                history.clear();
+            } else {
+                history.addLast(change);
+                if (history.size() > properties.historySize()) {
+                    history.removeFirst();
+                }
+            }
+            broadcast.tryEmitNext(change);
+        }
+    }
+
+    private List<UserChange> since(final String resumeToken) {
+        final List<UserChange> missed = new ArrayList<>();
+        boolean found = false;
+        for (UserChange change : history) {
+            if (found) {
+                missed.add(change);
+            } else {
+                found = resumeToken.equals(change.resumeToken());
+            }
+        }
+        return found ? missed : null;
+    }
+
+    private synchronized void checkpoint() {
+        final String token = resumeToken;
+        if (token == null || token.equals(persistedToken)) {
+            return;
+        }
+        try {
+            Files.createDirectories(tokenFile.toAbsolutePath().getParent());
+            final Path temporary = tokenFile.resolveSibling(tokenFile.getFileName() + ".tmp");
+            Files.writeString(temporary, token, StandardCharsets.UTF_8);
+            Files.move(temporary, tokenFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            persistedToken = token;
+        } catch (IOException ex) {
+            checkpointFailures.increment();
+        }
+    }
+
+    private boolean historyLost(final Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ResumeTokenExpiredException) {
+                return true;
+            }
+            if (cause instanceof MongoServerException serverException
+                    && HISTORY_LOST_CODES.contains(serverException.getCode())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
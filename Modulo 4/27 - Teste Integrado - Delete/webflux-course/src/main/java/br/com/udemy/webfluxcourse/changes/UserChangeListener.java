@@ -0,0 +1,11 @@
+package br.com.udemy.webfluxcourse.changes;
+
+import br.com.udemy.webfluxcourse.model.UserChange;
+import reactor.core.publisher.Mono;
+
+public interface UserChangeListener {
+
+    Mono<Void> onChange(final UserChange change);
+
+    Mono<Void> onReset();
+}
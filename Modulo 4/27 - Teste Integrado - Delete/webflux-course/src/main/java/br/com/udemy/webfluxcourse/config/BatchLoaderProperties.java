@@ -0,0 +1,15 @@
+package br.com.udemy.webfluxcourse.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "users.batch-loader")
+public record BatchLoaderProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("2ms") Duration window,
+        @DefaultValue("100") int maxBatchSize,
+        @DefaultValue("8") int concurrency
+) {
+}
@@ -0,0 +1,11 @@
+package br.com.udemy.webfluxcourse.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "users.batch")
+public record BatchProperties(
+        @DefaultValue("1000") int chunkSize,
+        @DefaultValue("4") int concurrency
+) {
+}
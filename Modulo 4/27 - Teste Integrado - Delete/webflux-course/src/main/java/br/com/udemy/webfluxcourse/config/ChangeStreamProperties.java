@@ -0,0 +1,24 @@
+package br.com.udemy.webfluxcourse.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "users.changes")
+public record ChangeStreamProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("data/changes/resume-token") String resumeTokenFile,
+        @DefaultValue("1s") Duration checkpointInterval,
+        @DefaultValue("1s") Duration minBackoff,
+        @DefaultValue("30s") Duration maxBackoff,
+        @DefaultValue("1000") int historySize,
+        @DefaultValue("256") int subscriberBuffer,
+        @DefaultValue("disconnect") Overflow overflow,
+        @DefaultValue("15s") Duration heartbeatInterval
+) {
+    public enum Overflow {
+        DROP_OLDEST,
+        DISCONNECT
+    }
+}
@@ -0,0 +1,32 @@
+package br.com.udemy.webfluxcourse.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "users.limits")
+public record LimitProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue Rate rate,
+        @DefaultValue Concurrency concurrency
+) {
+
+    public record Rate(
+            @DefaultValue("100") double permitsPerSecond,
+            @DefaultValue("200") int burst,
+            String clientHeader,
+            @DefaultValue("100000") long maxClients,
+            @DefaultValue("10m") Duration idleTimeout
+    ) {
+    }
+
+    public record Concurrency(
+            @DefaultValue("50") int initialLimit,
+            @DefaultValue("5") int minLimit,
+            @DefaultValue("400") int maxLimit,
+            @DefaultValue("0.9") double backoffRatio,
+            @DefaultValue("250ms") Duration latencyThreshold
+    ) {
+    }
+}
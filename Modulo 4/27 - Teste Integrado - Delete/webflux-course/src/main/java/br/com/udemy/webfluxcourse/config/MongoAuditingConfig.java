@@ -0,0 +1,9 @@
+package br.com.udemy.webfluxcourse.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.config.EnableReactiveMongoAuditing;
+
+@Configuration
+@EnableReactiveMongoAuditing
+public class MongoAuditingConfig {
+}
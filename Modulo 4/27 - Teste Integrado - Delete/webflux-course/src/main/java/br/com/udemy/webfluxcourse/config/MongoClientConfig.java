@@ -0,0 +1,53 @@
+package br.com.udemy.webfluxcourse.config;
+
+import br.com.udemy.webfluxcourse.metrics.MongoPoolMetrics;
+import com.mongodb.MongoCompressor;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+@Configuration
+public class MongoClientConfig {
+
+    @Bean
+    MongoClientSettingsBuilderCustomizer mongoPoolCustomizer(
+            final MongoClientProperties properties,
+            final MongoPoolMetrics poolMetrics
+    ) {
+        final var pool = properties.pool();
+        final var socket = properties.socket();
+        final var compressors = compressors(properties.compressors());
+        return builder -> {
+            if (!compressors.isEmpty()) {
+                builder.compressorList(compressors);
+            }
+            builder
+                    .applyToConnectionPoolSettings(settings -> settings
+                            .maxSize(pool.maxSize())
+                            .minSize(pool.minSize())
+                            .maxWaitTime(pool.maxWaitTime().toMillis(), MILLISECONDS)
+                            .maxConnectionIdleTime(pool.maxIdleTime().toMillis(), MILLISECONDS)
+                            .maxConnectionLifeTime(pool.maxLifeTime().toMillis(), MILLISECONDS)
+                            .maxConnecting(pool.maxConnecting())
+                            .addConnectionPoolListener(poolMetrics))
+                    .applyToSocketSettings(settings -> settings
+                            .connectTimeout((int) socket.connectTimeout().toMillis(), MILLISECONDS)
+                            .readTimeout((int) socket.readTimeout().toMillis(), MILLISECONDS));
+        };
+    }
+
+    public static List<MongoCompressor> compressors(final List<String> names) {
+        return names.stream()
+                .map(name -> switch (name.trim().toLowerCase()) {
+                    case "zstd" -> MongoCompressor.createZstdCompressor();
+                    case "snappy" -> MongoCompressor.createSnappyCompressor();
+                    case "zlib" -> MongoCompressor.createZlibCompressor();
+                    default -> throw new IllegalArgumentException("Unsupported Mongo compressor: " + name);
+                })
+                .toList();
+    }
+}
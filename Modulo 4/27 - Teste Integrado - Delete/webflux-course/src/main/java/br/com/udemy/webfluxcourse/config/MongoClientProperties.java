@@ -0,0 +1,31 @@
+package br.com.udemy.webfluxcourse.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+@ConfigurationProperties(prefix = "users.mongo")
+public record MongoClientProperties(
+        @DefaultValue Pool pool,
+        @DefaultValue Socket socket,
+        @DefaultValue List<String> compressors
+) {
+
+    public record Pool(
+            @DefaultValue("200") int maxSize,
+            @DefaultValue("10") int minSize,
+            @DefaultValue("2s") Duration maxWaitTime,
+            @DefaultValue("60s") Duration maxIdleTime,
+            @DefaultValue("30m") Duration maxLifeTime,
+            @DefaultValue("4") int maxConnecting
+    ) {
+    }
+
+    public record Socket(
+            @DefaultValue("5s") Duration connectTimeout,
+            @DefaultValue("30s") Duration readTimeout
+    ) {
+    }
+}
@@ -0,0 +1,10 @@
+package br.com.udemy.webfluxcourse.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "users.multi-get")
+public record MultiGetProperties(
+        @DefaultValue("100") int maxIds
+) {
+}
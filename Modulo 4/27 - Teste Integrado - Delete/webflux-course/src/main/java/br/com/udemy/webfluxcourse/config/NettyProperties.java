@@ -0,0 +1,13 @@
+package br.com.udemy.webfluxcourse.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "users.netty")
+public record NettyProperties(
+        @DefaultValue("1") int selectThreads,
+        @DefaultValue("0") int workerThreads,
+        @DefaultValue("true") boolean daemon,
+        @DefaultValue("true") boolean metrics
+) {
+}
@@ -0,0 +1,46 @@
+package br.com.udemy.webfluxcourse.config;
+
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ReactorResourceFactory;
+import reactor.netty.resources.LoopResources;
+
+@Configuration
+public class NettyServerConfig {
+
+    @Bean
+    ReactorResourceFactory reactorResourceFactory(final NettyProperties properties) {
+        final var workerThreads = properties.workerThreads() > 0
+                ? properties.workerThreads()
+                : LoopResources.DEFAULT_IO_WORKER_COUNT;
+        final var factory = new ReactorResourceFactory();
+        factory.setUseGlobalResources(false);
+        factory.setLoopResourcesSupplier(() -> LoopResources.create(
+                "users-http", properties.selectThreads(), workerThreads, properties.daemon()
+        ));
+        return factory;
+    }
+
+    @Bean
+    WebServerFactoryCustomizer<NettyReactiveWebServerFactory> nettyServerCustomizer(final NettyProperties properties) {
+        return factory -> factory.addServerCustomizers(server -> server
+                .metrics(properties.metrics(), NettyServerConfig::uriTag));
+    }
+
+    public static String uriTag(final String uri) {
+        final var query = uri.indexOf('?');
+        final var path = query >= 0 ? uri.substring(0, query) : uri;
+        if (path.startsWith("/actuator")) {
+            return "/actuator";
+        }
+        if (path.equals("/users") || path.equals("/users/batch") || path.equals("/users/conflicts") || path.equals("/users/changes")) {
+            return path;
+        }
+        if (path.startsWith("/users/")) {
+            return "/users/{id}";
+        }
+        return "UNKNOWN";
+    }
+}
@@ -0,0 +1,11 @@
+package br.com.udemy.webfluxcourse.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "users.pagination")
+public record PaginationProperties(
+        @DefaultValue("20") int defaultLimit,
+        @DefaultValue("100") int maxLimit
+) {
+}
@@ -0,0 +1,25 @@
+package br.com.udemy.webfluxcourse.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "users.resilience")
+public record ResilienceProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue Policy read,
+        @DefaultValue Policy write,
+        @DefaultValue Policy stream
+) {
+
+    public record Policy(
+            @DefaultValue("2s") Duration timeout,
+            @DefaultValue("100") int maxConcurrentCalls,
+            @DefaultValue("50") float failureRateThreshold,
+            @DefaultValue("50") int slidingWindowSize,
+            @DefaultValue("20") int minimumNumberOfCalls,
+            @DefaultValue("10s") Duration waitDurationInOpenState
+    ) {
+    }
+}
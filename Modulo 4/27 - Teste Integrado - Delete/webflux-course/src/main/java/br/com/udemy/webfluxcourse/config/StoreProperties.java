@@ -0,0 +1,13 @@
+package br.com.udemy.webfluxcourse.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "users.store")
+public record StoreProperties(
+        @DefaultValue("mongo") String type,
+        @DefaultValue("64") int shards,
+        @DefaultValue("1000") int changeHistory,
+        @DefaultValue("256") int watchBuffer
+) {
+}
@@ -0,0 +1,14 @@
+package br.com.udemy.webfluxcourse.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "users.stream")
+public record StreamProperties(
+        @DefaultValue("256") int batchSize,
+        @DefaultValue("128") int flushElements,
+        @DefaultValue("20ms") Duration flushInterval
+) {
+}
@@ -0,0 +1,22 @@
+package br.com.udemy.webfluxcourse.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "users.write-behind")
+public record WriteBehindProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("data/journal") String directory,
+        @DefaultValue("64MB") DataSize segmentSize,
+        @DefaultValue("false") boolean forceOnAppend,
+        @DefaultValue("500") int batchSize,
+        @DefaultValue("50ms") Duration flushInterval,
+        @DefaultValue("100000") int maxPending,
+        @DefaultValue("5") int maxRetries,
+        @DefaultValue("200ms") Duration retryBackoff,
+        @DefaultValue("10s") Duration shutdownTimeout
+) {
+}
@@ -1,31 +1,78 @@
 package br.com.udemy.webfluxcourse.controller;
 
 import br.com.udemy.webfluxcourse.model.request.UserRequest;
+import br.com.udemy.webfluxcourse.model.response.UserBatchResponse;
+import br.com.udemy.webfluxcourse.model.response.UserChangeResponse;
+import br.com.udemy.webfluxcourse.model.response.UserConflictResponse;
+import br.com.udemy.webfluxcourse.model.response.UserLookupResponse;
+import br.com.udemy.webfluxcourse.model.response.UserPageResponse;
 import br.com.udemy.webfluxcourse.model.response.UserResponse;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Instant;
+import java.util.List;
+
 public interface UserController {
 
     @PostMapping
     ResponseEntity<Mono<Void>> save(@Valid @RequestBody final UserRequest request);
 
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    ResponseEntity<Flux<UserBatchResponse>> saveAll(@RequestBody final Flux<UserRequest> requests);
+
     @GetMapping(value = "/{id}")
-    ResponseEntity<Mono<UserResponse>> findById(@PathVariable String id);
+    Mono<ResponseEntity<UserResponse>> findById(@PathVariable String id);
+
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    ResponseEntity<Mono<UserPageResponse>> findAll(
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit
+    );
+
+    @GetMapping(params = "ids")
+    ResponseEntity<Flux<UserLookupResponse>> findAllById(@RequestParam List<String> ids);
+
+    @GetMapping(produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    ResponseEntity<Flux<UserResponse>> stream();
+
+    @GetMapping(
+            params = "modifiedSince",
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE}
+    )
+    ResponseEntity<Flux<UserResponse>> findModifiedSince(@RequestParam Instant modifiedSince);
+
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    ResponseEntity<Flux<ServerSentEvent<UserChangeResponse>>> changeEvents(
+            @RequestParam(required = false) String resumeToken,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId
+    );
+
+    @GetMapping(value = "/changes", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    ResponseEntity<Flux<UserChangeResponse>> changes(@RequestParam(required = false) String resumeToken);
 
-    @GetMapping
-    ResponseEntity<Flux<UserResponse>> findAll();
+    @GetMapping(value = "/conflicts")
+    ResponseEntity<Flux<UserConflictResponse>> findConflicts(@RequestParam(required = false) String email);
 
     @PatchMapping(value = "/{id}")
-    ResponseEntity<Mono<UserResponse>> update(@PathVariable String id, @RequestBody UserRequest request);
+    Mono<ResponseEntity<UserResponse>> update(
+            @PathVariable String id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody UserRequest request
+    );
 
     @DeleteMapping(value = "/{id}")
     ResponseEntity<Mono<Void>> delete(@PathVariable String id);
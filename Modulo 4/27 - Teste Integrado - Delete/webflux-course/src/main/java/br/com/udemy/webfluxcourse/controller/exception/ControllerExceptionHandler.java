@@ -1,6 +1,21 @@
 package br.com.udemy.webfluxcourse.controller.exception;
 
+import br.com.udemy.webfluxcourse.metrics.UserMetrics;
+import br.com.udemy.webfluxcourse.service.exception.ChangeFeedUnavailableException;
+import br.com.udemy.webfluxcourse.service.exception.DuplicateKeyMessages;
+import br.com.udemy.webfluxcourse.service.exception.InvalidCursorException;
+import br.com.udemy.webfluxcourse.service.exception.InvalidIdException;
 import br.com.udemy.webfluxcourse.service.exception.ObjectNotFoundException;
+import br.com.udemy.webfluxcourse.service.exception.PreconditionFailedException;
+import br.com.udemy.webfluxcourse.service.exception.ResumeTokenExpiredException;
+import br.com.udemy.webfluxcourse.service.exception.TooManyIdsException;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.micrometer.context.ContextSnapshot;
+import io.micrometer.context.ContextSnapshotFactory;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+import lombok.RequiredArgsConstructor;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.server.reactive.ServerHttpRequest;
@@ -10,23 +25,37 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.support.WebExchangeBindException;
 import reactor.core.publisher.Mono;
 
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
 import static java.time.LocalDateTime.now;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.GATEWAY_TIMEOUT;
+import static org.springframework.http.HttpStatus.GONE;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.PRECONDITION_FAILED;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
 
 @ControllerAdvice
+@RequiredArgsConstructor
 public class ControllerExceptionHandler {
 
+    private static final ContextSnapshotFactory SNAPSHOTS = ContextSnapshotFactory.builder().build();
+
+    private final UserMetrics metrics;
+    private final Tracer tracer;
+
     @ExceptionHandler(DuplicateKeyException.class)
     ResponseEntity<Mono<StandardError>> duplicateKeyException(DuplicateKeyException ex, ServerHttpRequest request) {
         return ResponseEntity.badRequest().body(
-                Mono.just(
+                traced(() ->
                         StandardError.builder()
                                 .timestamp(now())
                                 .status(BAD_REQUEST.value())
                                 .error(BAD_REQUEST.getReasonPhrase())
-                                .message(verifyDupKey(ex.getMessage()))
+                                .message(DuplicateKeyMessages.describe(ex.getMessage()))
                                 .path(request.getPath().toString())
+                                .traceId(traceId())
                                 .build()
                 )
         );
@@ -36,40 +65,141 @@ public class ControllerExceptionHandler {
     public ResponseEntity<Mono<ValidationError>> validationError(
             WebExchangeBindException ex, ServerHttpRequest request
     ) {
-        ValidationError error = new ValidationError(
-                now(),
-                request.getPath().toString(),
-                BAD_REQUEST.value(),
-                "Validation Error",
-                "Error on validation attributes"
-        );
+        final var operation = ex.getMethodParameter() != null
+                ? ex.getMethodParameter().getExecutable().getName()
+                : request.getPath().toString();
+        metrics.record("controller", operation, UserMetrics.VALIDATION_ERROR);
 
-        for (FieldError x : ex.getBindingResult().getFieldErrors()) {
-            error.addError(x.getField(), x.getDefaultMessage());
-        }
+        return ResponseEntity.status(BAD_REQUEST).body(traced(() -> {
+            ValidationError error = new ValidationError(
+                    now(),
+                    request.getPath().toString(),
+                    BAD_REQUEST.value(),
+                    "Validation Error",
+                    "Error on validation attributes",
+                    traceId()
+            );
 
-        return ResponseEntity.status(BAD_REQUEST).body(Mono.just(error));
+            for (FieldError x : ex.getBindingResult().getFieldErrors()) {
+                error.addError(x.getField(), x.getDefaultMessage());
+            }
+            return error;
+        }));
     }
 
     @ExceptionHandler(ObjectNotFoundException.class)
     ResponseEntity<Mono<StandardError>> objectNotFoundException(ObjectNotFoundException ex, ServerHttpRequest request) {
         return ResponseEntity.status(NOT_FOUND).body(
-                Mono.just(
+                traced(() ->
                         StandardError.builder()
                                 .timestamp(now())
                                 .status(NOT_FOUND.value())
                                 .error(NOT_FOUND.getReasonPhrase())
                                 .message(ex.getMessage())
                                 .path(request.getPath().toString())
+                                .traceId(traceId())
+                                .build()
+                )
+        );
+    }
+
+    @ExceptionHandler(PreconditionFailedException.class)
+    ResponseEntity<Mono<StandardError>> preconditionFailedException(
+            PreconditionFailedException ex, ServerHttpRequest request
+    ) {
+        return ResponseEntity.status(PRECONDITION_FAILED).body(
+                traced(() ->
+                        StandardError.builder()
+                                .timestamp(now())
+                                .status(PRECONDITION_FAILED.value())
+                                .error(PRECONDITION_FAILED.getReasonPhrase())
+                                .message(ex.getMessage())
+                                .path(request.getPath().toString())
+                                .traceId(traceId())
+                                .build()
+                )
+        );
+    }
+
+    @ExceptionHandler({CallNotPermittedException.class, BulkheadFullException.class, ChangeFeedUnavailableException.class})
+    ResponseEntity<Mono<StandardError>> serviceUnavailableException(RuntimeException ex, ServerHttpRequest request) {
+        return ResponseEntity.status(SERVICE_UNAVAILABLE).body(
+                traced(() ->
+                        StandardError.builder()
+                                .timestamp(now())
+                                .status(SERVICE_UNAVAILABLE.value())
+                                .error(SERVICE_UNAVAILABLE.getReasonPhrase())
+                                .message(ex.getMessage())
+                                .path(request.getPath().toString())
+                                .traceId(traceId())
+                                .build()
+                )
+        );
+    }
+
+    @ExceptionHandler(ResumeTokenExpiredException.class)
+    ResponseEntity<Mono<StandardError>> resumeTokenExpiredException(
+            ResumeTokenExpiredException ex, ServerHttpRequest request
+    ) {
+        return ResponseEntity.status(GONE).body(
+                traced(() ->
+                        StandardError.builder()
+                                .timestamp(now())
+                                .status(GONE.value())
+                                .error(GONE.getReasonPhrase())
+                                .message(ex.getMessage())
+                                .path(request.getPath().toString())
+                                .traceId(traceId())
+                                .build()
+                )
+        );
+    }
+
+    @ExceptionHandler(TimeoutException.class)
+    ResponseEntity<Mono<StandardError>> timeoutException(TimeoutException ex, ServerHttpRequest request) {
+        return ResponseEntity.status(GATEWAY_TIMEOUT).body(
+                traced(() ->
+                        StandardError.builder()
+                                .timestamp(now())
+                                .status(GATEWAY_TIMEOUT.value())
+                                .error(GATEWAY_TIMEOUT.getReasonPhrase())
+                                .message(ex.getMessage())
+                                .path(request.getPath().toString())
+                                .traceId(traceId())
                                 .build()
                 )
         );
     }
 
-    private String verifyDupKey(String message) {
-        if (message.contains("email dup key")) {
-            return "E-mail already registered";
-        }
-        return "Dup key exception";
+    @ExceptionHandler({InvalidCursorException.class, InvalidIdException.class, TooManyIdsException.class})
+    ResponseEntity<Mono<StandardError>> badRequestException(RuntimeException ex, ServerHttpRequest request) {
+        return ResponseEntity.badRequest().body(
+                traced(() ->
+                        StandardError.builder()
+                                .timestamp(now())
+                                .status(BAD_REQUEST.value())
+                                .error(BAD_REQUEST.getReasonPhrase())
+                                .message(ex.getMessage())
+                                .path(request.getPath().toString())
+                                .traceId(traceId())
+                                .build()
+                )
+        );
+    }
+
+    private <T> Mono<T> traced(Supplier<T> body) {
+        return Mono.deferContextual(context -> {
+            final ContextSnapshot.Scope scope = SNAPSHOTS.setThreadLocalsFrom(context);
+            try {
+                return Mono.just(body.get());
+            } finally {
+                scope.close();
+            }
+        });
+    }
+
+    private String traceId() {
+        Span span = tracer.currentSpan();
+        return span != null ? span.context().traceId() : null;
     }
 }
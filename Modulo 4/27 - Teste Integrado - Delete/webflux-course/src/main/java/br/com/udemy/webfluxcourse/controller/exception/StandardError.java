@@ -1,5 +1,6 @@
 package br.com.udemy.webfluxcourse.controller.exception;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Builder;
 import lombok.Data;
 
@@ -19,4 +20,7 @@ public class StandardError implements Serializable {
     private Integer status;
     private String error;
     private String message;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String traceId;
 }
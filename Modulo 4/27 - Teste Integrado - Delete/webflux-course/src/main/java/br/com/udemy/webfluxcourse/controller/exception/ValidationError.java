@@ -16,8 +16,8 @@ public class ValidationError extends StandardError {
     private List<FieldError> errors = new ArrayList<>();
 
 
-    public ValidationError(LocalDateTime timestamp, String path, Integer status, String error, String message) {
-        super(timestamp, path, status, error, message);
+    public ValidationError(LocalDateTime timestamp, String path, Integer status, String error, String message, String traceId) {
+        super(timestamp, path, status, error, message, traceId);
     }
 
     public void addError(String fieldName, String message){
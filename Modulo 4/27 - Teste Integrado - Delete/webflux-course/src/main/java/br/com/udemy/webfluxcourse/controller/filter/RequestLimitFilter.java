@@ -0,0 +1,228 @@
+package br.com.udemy.webfluxcourse.controller.filter;
+
+import br.com.udemy.webfluxcourse.config.LimitProperties;
+import br.com.udemy.webfluxcourse.config.NettyServerConfig;
+import br.com.udemy.webfluxcourse.controller.exception.StandardError;
+import br.com.udemy.webfluxcourse.limiter.AimdConcurrencyLimiter;
+import br.com.udemy.webfluxcourse.limiter.TokenBucketRateLimiter;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.context.ContextSnapshot;
+import io.micrometer.context.ContextSnapshotFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static java.time.LocalDateTime.now;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+import static org.springframework.http.HttpStatus.TOO_MANY_REQUESTS;
+
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RequestLimitFilter implements WebFilter {
+
+    private static final ContextSnapshotFactory SNAPSHOTS = ContextSnapshotFactory.builder().build();
+
+    private static final String RATE = "rate";
+    private static final String CONCURRENCY = "concurrency";
+    private static final String ADMITTED = "admitted";
+    private static final String SHED = "shed";
+    private static final String OTHER = "OTHER";
+    private static final String NONE = "none";
+    private static final String IDS = "ids";
+    private static final String MODIFIED_SINCE = "modifiedSince";
+
+    // Anything the router does not serve shares one bucket so arbitrary method names cannot grow the meters.
+    private static final Set<HttpMethod> ROUTED_METHODS = Set.of(
+            HttpMethod.GET, HttpMethod.POST, HttpMethod.PATCH, HttpMethod.DELETE
+    );
+
+    private final LimitProperties properties;
+    private final MeterRegistry registry;
+    private final ObjectMapper objectMapper;
+    private final Tracer tracer;
+    private final TokenBucketRateLimiter rateLimiter;
+    private final Map<String, AimdConcurrencyLimiter> concurrencyLimiters = new ConcurrentHashMap<>();
+
+    public RequestLimitFilter(
+            final LimitProperties properties,
+            final MeterRegistry registry,
+            final ObjectMapper objectMapper,
+            final Tracer tracer
+    ) {
+        this.properties = properties;
+        this.registry = registry;
+        this.objectMapper = objectMapper;
+        this.tracer = tracer;
+        this.rateLimiter = new TokenBucketRateLimiter(properties.rate(), System::nanoTime);
+    }
+
+    @Override
+    public Mono<Void> filter(final ServerWebExchange exchange, final WebFilterChain chain) {
+        final var request = exchange.getRequest();
+        final var path = request.getPath().pathWithinApplication().value();
+        if (!properties.enabled() || !path.startsWith("/users")) {
+            return chain.filter(exchange);
+        }
+
+        final var method = ROUTED_METHODS.contains(request.getMethod()) ? request.getMethod().name() : OTHER;
+        final var uri = NettyServerConfig.uriTag(path);
+        final var query = queryTag(request, uri);
+
+        final long waitNanos = rateLimiter.tryAcquire(clientKey(request));
+        if (waitNanos > 0) {
+            record(RATE, SHED, method, uri, query);
+            return reject(exchange, TOO_MANY_REQUESTS, retryAfterSeconds(waitNanos),
+                    "Rate limit exceeded. Retry later");
+        }
+        record(RATE, ADMITTED, method, uri, query);
+
+        if (isLongLived(request, uri)) {
+            return chain.filter(exchange);
+        }
+
+        final var limiter = concurrencyLimiters.computeIfAbsent(
+                method + " " + uri + "?" + query, key -> register(method, uri, query)
+        );
+        if (!limiter.tryAcquire()) {
+            record(CONCURRENCY, SHED, method, uri, query);
+            return reject(exchange, SERVICE_UNAVAILABLE, 1,
+                    String.format("Concurrency limit exceeded. Limit: %d", limiter.limit()));
+        }
+        record(CONCURRENCY, ADMITTED, method, uri, query);
+
+        final long start = limiter.start();
+        return chain.filter(exchange).doFinally(signal -> {
+            final HttpStatusCode status = exchange.getResponse().getStatusCode();
+            if (signal == SignalType.CANCEL) {
+                limiter.onIgnored();
+            } else if (signal == SignalType.ON_ERROR || status != null && status.is5xxServerError()) {
+                limiter.onDropped(start);
+            } else {
+                limiter.onSuccess(start);
+            }
+        });
+    }
+
+    // The id header is only trusted when configured, e.g. when a proxy in front of the service sets it.
+    private String clientKey(final ServerHttpRequest request) {
+        final var clientHeader = properties.rate().clientHeader();
+        if (clientHeader != null && !clientHeader.isBlank()) {
+            final var header = request.getHeaders().getFirst(clientHeader);
+            if (header != null && !header.isBlank()) {
+                return header;
+            }
+        }
+        final var address = request.getRemoteAddress();
+        if (address == null) {
+            return "unknown";
+        }
+        return address.getAddress() != null ? address.getAddress().getHostAddress() : address.getHostString();
+    }
+
+    // Lookups by ids and the modifiedSince export get their own limiter, so a slow export cannot throttle paging.
+    private String queryTag(final ServerHttpRequest request, final String uri) {
+        if (request.getMethod() != HttpMethod.GET || !uri.equals("/users")) {
+            return NONE;
+        }
+        final var params = request.getQueryParams();
+        if (params.containsKey(IDS)) {
+            return IDS;
+        }
+        return params.containsKey(MODIFIED_SINCE) ? MODIFIED_SINCE : NONE;
+    }
+
+    private boolean isLongLived(final ServerHttpRequest request, final String uri) {
+        if (request.getMethod() != HttpMethod.GET) {
+            return false;
+        }
+        if (uri.equals("/users/changes")) {
+            return true;
+        }
+        return uri.equals("/users")
+                && !request.getQueryParams().containsKey(IDS)
+                && request.getHeaders().getAccept().stream().anyMatch(mediaType ->
+                MediaType.APPLICATION_NDJSON.equalsTypeAndSubtype(mediaType)
+                        || MediaType.TEXT_EVENT_STREAM.equalsTypeAndSubtype(mediaType));
+    }
+
+    private AimdConcurrencyLimiter register(final String method, final String uri, final String query) {
+        final var limiter = new AimdConcurrencyLimiter(properties.concurrency(), System::nanoTime);
+        Gauge.builder("users.limiter.concurrency.limit", limiter, AimdConcurrencyLimiter::limit)
+                .description("Current adaptive concurrency limit")
+                .tags("method", method, "uri", uri, "query", query)
+                .register(registry);
+        Gauge.builder("users.limiter.concurrency.in-flight", limiter, AimdConcurrencyLimiter::inFlight)
+                .description("Requests currently admitted by the concurrency limiter")
+                .tags("method", method, "uri", uri, "query", query)
+                .register(registry);
+        return limiter;
+    }
+
+    private void record(
+            final String limiter, final String outcome, final String method, final String uri, final String query
+    ) {
+        Counter.builder("users.limiter.requests")
+                .tags("limiter", limiter, "outcome", outcome, "method", method, "uri", uri, "query", query)
+                .register(registry)
+                .increment();
+    }
+
+    private long retryAfterSeconds(final long waitNanos) {
+        return Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private Mono<Void> reject(
+            final ServerWebExchange exchange, final HttpStatus status, final long retryAfterSeconds, final String message
+    ) {
+        final var response = exchange.getResponse();
+        response.setStatusCode(status);
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+
+        return response.writeWith(Mono.deferContextual(context -> {
+            final ContextSnapshot.Scope scope = SNAPSHOTS.setThreadLocalsFrom(context);
+            try {
+                final var error = StandardError.builder()
+                        .timestamp(now())
+                        .status(status.value())
+                        .error(status.getReasonPhrase())
+                        .message(message)
+                        .path(exchange.getRequest().getPath().toString())
+                        .traceId(traceId())
+                        .build();
+                return Mono.just(response.bufferFactory().wrap(objectMapper.writeValueAsBytes(error)));
+            } catch (JsonProcessingException ex) {
+                return Mono.error(ex);
+            } finally {
+                scope.close();
+            }
+        }));
+    }
+
+    private String traceId() {
+        Span span = tracer.currentSpan();
+        return span != null ? span.context().traceId() : null;
+    }
+}
@@ -0,0 +1,59 @@
+package br.com.udemy.webfluxcourse.controller.filter;
+
+import br.com.udemy.webfluxcourse.config.StreamProperties;
+import lombok.RequiredArgsConstructor;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Only the GET /users NDJSON stream and export are batched: Jackson writes one buffer per NDJSON line there,
+// so flush-elements counts lines. SSE and the change stream flush every event so heartbeats are not delayed.
+@Component
+@RequiredArgsConstructor
+public class StreamFlushFilter implements WebFilter {
+
+    private final StreamProperties properties;
+
+    @Override
+    public Mono<Void> filter(final ServerWebExchange exchange, final WebFilterChain chain) {
+        final var request = exchange.getRequest();
+        if (properties.flushElements() <= 1
+                || request.getMethod() != HttpMethod.GET
+                || !request.getPath().pathWithinApplication().value().equals("/users")) {
+            return chain.filter(exchange);
+        }
+        return chain.filter(exchange.mutate()
+                .response(new BatchedFlushResponse(exchange.getResponse()))
+                .build());
+    }
+
+    private class BatchedFlushResponse extends ServerHttpResponseDecorator {
+
+        BatchedFlushResponse(final ServerHttpResponse delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public Mono<Void> writeAndFlushWith(final Publisher<? extends Publisher<? extends DataBuffer>> body) {
+            final var contentType = getHeaders().getContentType();
+            if (contentType == null || !MediaType.APPLICATION_NDJSON.equalsTypeAndSubtype(contentType)) {
+                return super.writeAndFlushWith(body);
+            }
+            return super.writeAndFlushWith(Flux.from(body)
+                    .concatMap(Flux::from)
+                    .bufferTimeout(properties.flushElements(), properties.flushInterval(), true)
+                    .map(buffers -> Mono.just(bufferFactory().join(buffers)))
+                    .doOnDiscard(DataBuffer.class, DataBufferUtils::release));
+        }
+    }
+}
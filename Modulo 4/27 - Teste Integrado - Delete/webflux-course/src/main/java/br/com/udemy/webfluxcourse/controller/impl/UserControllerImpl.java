@@ -1,25 +1,41 @@
 package br.com.udemy.webfluxcourse.controller.impl;
 
+import br.com.udemy.webfluxcourse.config.ChangeStreamProperties;
 import br.com.udemy.webfluxcourse.controller.UserController;
+import br.com.udemy.webfluxcourse.entity.User;
 import br.com.udemy.webfluxcourse.mapper.UserMapper;
 import br.com.udemy.webfluxcourse.model.request.UserRequest;
+import br.com.udemy.webfluxcourse.model.response.UserBatchResponse;
+import br.com.udemy.webfluxcourse.model.response.UserChangeResponse;
+import br.com.udemy.webfluxcourse.model.response.UserConflictResponse;
+import br.com.udemy.webfluxcourse.model.response.UserLookupResponse;
+import br.com.udemy.webfluxcourse.model.response.UserPageResponse;
 import br.com.udemy.webfluxcourse.model.response.UserResponse;
 import br.com.udemy.webfluxcourse.service.UserService;
+import br.com.udemy.webfluxcourse.service.exception.PreconditionFailedException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+
 @RestController
 @RequiredArgsConstructor
 @RequestMapping(value = "/users")
 public class UserControllerImpl implements UserController {
 
+    private static final String HEARTBEAT = "HEARTBEAT";
+
     private final UserService service;
     private final UserMapper mapper;
+    private final ChangeStreamProperties changeStreamProperties;
 
     @Override
     public ResponseEntity<Mono<Void>> save(final UserRequest request) {
@@ -27,31 +43,113 @@ public class UserControllerImpl implements UserController {
     }
 
     @Override
-    public ResponseEntity<Mono<UserResponse>> findById(String id) {
+    public ResponseEntity<Flux<UserBatchResponse>> saveAll(final Flux<UserRequest> requests) {
+        return ResponseEntity.ok().body(
+                service.saveAll(requests).map(mapper::toResponse)
+        );
+    }
+
+    @Override
+    public Mono<ResponseEntity<UserResponse>> findById(String id) {
+        return service.findById(id).map(user -> ResponseEntity.ok()
+                .eTag(eTag(user))
+                .body(mapper.toResponse(user))
+        );
+    }
 
+    @Override
+    public ResponseEntity<Mono<UserPageResponse>> findAll(String after, Integer limit) {
         return ResponseEntity.ok().body(
-                service.findById(id).map(mapper::toResponse)
+                service.findAll(after, limit).map(mapper::toResponse)
         );
     }
 
     @Override
-    public ResponseEntity<Flux<UserResponse>> findAll() {
+    public ResponseEntity<Flux<UserLookupResponse>> findAllById(List<String> ids) {
+        return ResponseEntity.ok().body(
+                service.findAllById(ids).map(mapper::toResponse)
+        );
+    }
+
+    @Override
+    public ResponseEntity<Flux<UserResponse>> stream() {
         return ResponseEntity.ok().body(
                 service.findAll().map(mapper::toResponse)
         );
     }
 
     @Override
-    public ResponseEntity<Mono<UserResponse>> update(String id, UserRequest request) {
+    public ResponseEntity<Flux<ServerSentEvent<UserChangeResponse>>> changeEvents(String resumeToken, String lastEventId) {
+        final var heartbeats = Flux.interval(changeStreamProperties.heartbeatInterval())
+                .map(tick -> ServerSentEvent.<UserChangeResponse>builder().comment("heartbeat").build());
         return ResponseEntity.ok().body(
-                service.update(id, request).map(mapper::toResponse)
+                service.watchChanges(resumeToken != null ? resumeToken : lastEventId)
+                        .map(change -> ServerSentEvent.builder(mapper.toResponse(change))
+                                .id(change.resumeToken())
+                                .event(change.type().name().toLowerCase())
+                                .build())
+                        .mergeWith(heartbeats)
         );
     }
 
+    @Override
+    public ResponseEntity<Flux<UserChangeResponse>> changes(String resumeToken) {
+        final var heartbeats = Flux.interval(changeStreamProperties.heartbeatInterval())
+                .map(tick -> new UserChangeResponse(HEARTBEAT, null, null, null));
+        return ResponseEntity.ok().body(
+                service.watchChanges(resumeToken)
+                        .map(mapper::toResponse)
+                        .mergeWith(heartbeats)
+        );
+    }
+
+    @Override
+    public ResponseEntity<Flux<UserConflictResponse>> findConflicts(String email) {
+        return ResponseEntity.ok().body(
+                service.findConflicts(email).map(mapper::toResponse)
+        );
+    }
+
+    @Override
+    public ResponseEntity<Flux<UserResponse>> findModifiedSince(Instant modifiedSince) {
+        return ResponseEntity.ok().body(
+                service.findModifiedSince(modifiedSince).map(mapper::toResponse)
+        );
+    }
+
+    @Override
+    public Mono<ResponseEntity<UserResponse>> update(String id, String ifMatch, UserRequest request) {
+        return Mono.defer(() -> service.update(id, expectedVersion(ifMatch), request))
+                .map(user -> ResponseEntity.ok()
+                        .eTag(eTag(user))
+                        .body(mapper.toResponse(user))
+                );
+    }
+
     @Override
     public ResponseEntity<Mono<Void>> delete(String id) {
         return ResponseEntity.ok().body(
                 service.delete(id).then()
         );
     }
+
+    private static Long expectedVersion(final String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        final var tag = ifMatch.trim();
+        final var opaque = tag.startsWith("W/") ? tag.substring(2) : tag;
+        if (opaque.length() > 2 && opaque.startsWith("\"") && opaque.endsWith("\"")) {
+            try {
+                return Long.parseLong(opaque.substring(1, opaque.length() - 1));
+            } catch (NumberFormatException ignored) {
+                // falls through to the precondition error below
+            }
+        }
+        throw new PreconditionFailedException(String.format("Precondition failed. If-Match: %s", ifMatch));
+    }
+
+    private static String eTag(final User user) {
+        return "W/\"" + Objects.requireNonNullElse(user.getVersion(), 0L) + "\"";
+    }
 }
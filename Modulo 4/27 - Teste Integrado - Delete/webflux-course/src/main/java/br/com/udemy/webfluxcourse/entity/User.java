@@ -2,13 +2,20 @@ package br.com.udemy.webfluxcourse.entity;
 
 import lombok.Builder;
 import lombok.Data;
+import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.time.Instant;
+
 @Data
 @Builder
 @Document
+@CompoundIndex(name = "updatedAt_id", def = "{'updatedAt': 1, '_id': 1}")
 public class User {
     @Id
     private String id;
@@ -17,4 +24,13 @@ public class User {
     @Indexed(unique = true)
     private String email;
     private String password;
+
+    @Version
+    private Long version;
+
+    @CreatedDate
+    private Instant createdAt;
+
+    @LastModifiedDate
+    private Instant updatedAt;
 }
@@ -0,0 +1,23 @@
+package br.com.udemy.webfluxcourse.entity;
+
+import lombok.Builder;
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@Document
+public class UserConflict {
+    @Id
+    private String id;
+    private String name;
+
+    @Indexed
+    private String email;
+    private String reason;
+    private LocalDateTime detectedAt;
+}
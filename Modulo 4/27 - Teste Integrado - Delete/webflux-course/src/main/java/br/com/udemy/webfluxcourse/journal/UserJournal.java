@@ -0,0 +1,201 @@
+package br.com.udemy.webfluxcourse.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+// Record layout: [int payload length][long sequence][payload][int crc32c(sequence + payload)].
+// A zero length or a crc mismatch marks the end of the written part of a segment.
+public class UserJournal implements Closeable {
+
+    private static final int HEADER_BYTES = Integer.BYTES + Long.BYTES;
+    private static final int TRAILER_BYTES = Integer.BYTES;
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String CHECKPOINT = "checkpoint";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean forceOnAppend;
+    private final NavigableMap<Long, Path> segments = new TreeMap<>();
+    private final List<Record> recovered = new ArrayList<>();
+    private final Object checkpointLock = new Object();
+
+    private MappedByteBuffer active;
+    private long nextSequence;
+    private long checkpoint;
+
+    private UserJournal(final Path directory, final int segmentSize, final boolean forceOnAppend) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.forceOnAppend = forceOnAppend;
+    }
+
+    public static UserJournal open(final Path directory, final int segmentSize, final boolean forceOnAppend)
+            throws IOException {
+        final var journal = new UserJournal(directory, segmentSize, forceOnAppend);
+        journal.recover();
+        return journal;
+    }
+
+    public synchronized List<Record> recovered() {
+        return List.copyOf(recovered);
+    }
+
+    public synchronized long append(final byte[] payload) throws IOException {
+        final int size = HEADER_BYTES + payload.length + TRAILER_BYTES;
+        if (size > segmentSize) {
+            throw new IllegalArgumentException(String.format(
+                    "Journal record of %d bytes does not fit a %d bytes segment", size, segmentSize
+            ));
+        }
+        if (active == null || active.remaining() < size) {
+            roll();
+        }
+
+        final long sequence = nextSequence++;
+        active.putInt(payload.length)
+                .putLong(sequence)
+                .put(payload)
+                .putInt(crc(sequence, payload));
+        if (forceOnAppend) {
+            active.force();
+        }
+        return sequence;
+    }
+
+    // The file writes run under their own lock so appends are never held up by checkpoint I/O.
+    public void checkpoint(final long sequence) throws IOException {
+        synchronized (checkpointLock) {
+            if (sequence <= checkpoint) {
+                return;
+            }
+            final var temporary = directory.resolve(CHECKPOINT + ".tmp");
+            Files.write(temporary, ByteBuffer.allocate(Long.BYTES).putLong(sequence).array());
+            Files.move(temporary, directory.resolve(CHECKPOINT),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            final List<Path> flushed;
+            synchronized (this) {
+                checkpoint = sequence;
+                recovered.removeIf(record -> record.sequence() <= sequence);
+                flushed = removeFlushedSegments();
+            }
+            for (Path segment : flushed) {
+                Files.deleteIfExists(segment);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (active != null) {
+            active.force();
+            active = null;
+        }
+    }
+
+    private void recover() throws IOException {
+        Files.createDirectories(directory);
+        final var checkpointFile = directory.resolve(CHECKPOINT);
+        checkpoint = Files.exists(checkpointFile)
+                ? ByteBuffer.wrap(Files.readAllBytes(checkpointFile)).getLong()
+                : 0L;
+        nextSequence = checkpoint + 1;
+
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .forEach(file -> segments.put(firstSequence(file), file));
+        }
+
+        for (Map.Entry<Long, Path> segment : segments.entrySet()) {
+            final var buffer = map(segment.getValue());
+            scan(buffer);
+            active = buffer;
+        }
+        for (Path segment : removeFlushedSegments()) {
+            Files.deleteIfExists(segment);
+        }
+    }
+
+    private void scan(final MappedByteBuffer buffer) {
+        while (buffer.remaining() >= HEADER_BYTES + TRAILER_BYTES) {
+            final int start = buffer.position();
+            final int length = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining() - Long.BYTES - TRAILER_BYTES) {
+                buffer.position(start);
+                return;
+            }
+            final long sequence = buffer.getLong();
+            final byte[] payload = new byte[length];
+            buffer.get(payload);
+            if (buffer.getInt() != crc(sequence, payload)) {
+                buffer.position(start);
+                return;
+            }
+            if (sequence > checkpoint) {
+                recovered.add(new Record(sequence, payload));
+            }
+            nextSequence = Math.max(nextSequence, sequence + 1);
+        }
+    }
+
+    private void roll() throws IOException {
+        if (active != null) {
+            active.force();
+        }
+        final var file = directory.resolve(String.format("%020d%s", nextSequence, SEGMENT_SUFFIX));
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            active = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        segments.put(nextSequence, file);
+    }
+
+    private List<Path> removeFlushedSegments() {
+        final List<Path> flushed = new ArrayList<>();
+        while (segments.size() > 1) {
+            final var oldest = segments.firstEntry();
+            final long nextFirst = segments.higherKey(oldest.getKey());
+            if (nextFirst - 1 > checkpoint) {
+                break;
+            }
+            flushed.add(oldest.getValue());
+            segments.remove(oldest.getKey());
+        }
+        return flushed;
+    }
+
+    private MappedByteBuffer map(final Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        }
+    }
+
+    private static long firstSequence(final Path file) {
+        final var name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static int crc(final long sequence, final byte[] payload) {
+        final var crc = new CRC32C();
+        crc.update(ByteBuffer.allocate(Long.BYTES).putLong(sequence).flip());
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    public record Record(long sequence, byte[] payload) {
+    }
+}
@@ -0,0 +1,77 @@
+package br.com.udemy.webfluxcourse.limiter;
+
+import br.com.udemy.webfluxcourse.config.LimitProperties;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+public class AimdConcurrencyLimiter {
+
+    private final LimitProperties.Concurrency properties;
+    private final long latencyThresholdNanos;
+    private final AtomicInteger limit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongSupplier clock;
+    private final AtomicLong lastBackOff;
+
+    public AimdConcurrencyLimiter(final LimitProperties.Concurrency properties, final LongSupplier clock) {
+        this.properties = properties;
+        this.latencyThresholdNanos = properties.latencyThreshold().toNanos();
+        this.clock = clock;
+        this.lastBackOff = new AtomicLong(clock.getAsLong());
+        this.limit = new AtomicInteger(Math.min(
+                Math.max(properties.initialLimit(), properties.minLimit()), properties.maxLimit()
+        ));
+    }
+
+    public boolean tryAcquire() {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= limit.get()) {
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    public long start() {
+        return clock.getAsLong();
+    }
+
+    public void onSuccess(final long startNanos) {
+        final int inFlightBefore = inFlight.getAndDecrement();
+        if (clock.getAsLong() - startNanos > latencyThresholdNanos) {
+            backOff(startNanos);
+        } else if (inFlightBefore * 2 >= limit.get()) {
+            limit.updateAndGet(current -> Math.min(current + 1, properties.maxLimit()));
+        }
+    }
+
+    public void onDropped(final long startNanos) {
+        inFlight.decrementAndGet();
+        backOff(startNanos);
+    }
+
+    public void onIgnored() {
+        inFlight.decrementAndGet();
+    }
+
+    public int limit() {
+        return limit.get();
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    // Requests admitted before the last decrease saw the old limit, so their drops are not a new signal.
+    private void backOff(final long startNanos) {
+        final long last = lastBackOff.get();
+        if (startNanos - last < 0 || !lastBackOff.compareAndSet(last, clock.getAsLong())) {
+            return;
+        }
+        limit.updateAndGet(current -> Math.max((int) (current * properties.backoffRatio()), properties.minLimit()));
+    }
+}
@@ -0,0 +1,44 @@
+package br.com.udemy.webfluxcourse.limiter;
+
+import br.com.udemy.webfluxcourse.config.LimitProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+public class TokenBucketRateLimiter {
+
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final LongSupplier clock;
+    private final Cache<String, AtomicLong> buckets;
+
+    public TokenBucketRateLimiter(final LimitProperties.Rate properties, final LongSupplier clock) {
+        this.emissionIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / properties.permitsPerSecond());
+        this.burstToleranceNanos = emissionIntervalNanos * (Math.max(properties.burst(), 1) - 1);
+        this.clock = clock;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(properties.maxClients())
+                .expireAfterAccess(properties.idleTimeout())
+                .build();
+    }
+
+    // Returns 0 when a permit was taken, otherwise the nanos until the next one frees up.
+    public long tryAcquire(final String key) {
+        final AtomicLong theoreticalArrival = buckets.get(key, ignored -> new AtomicLong(clock.getAsLong()));
+        while (true) {
+            final long now = clock.getAsLong();
+            final long current = theoreticalArrival.get();
+            final long start = Math.max(current, now);
+            final long wait = start - now - burstToleranceNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (theoreticalArrival.compareAndSet(current, start + emissionIntervalNanos)) {
+                return 0;
+            }
+        }
+    }
+}
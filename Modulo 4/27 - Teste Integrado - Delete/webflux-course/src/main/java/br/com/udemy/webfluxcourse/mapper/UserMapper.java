@@ -1,11 +1,20 @@
 package br.com.udemy.webfluxcourse.mapper;
 
 import br.com.udemy.webfluxcourse.entity.User;
+import br.com.udemy.webfluxcourse.entity.UserConflict;
+import br.com.udemy.webfluxcourse.model.UserBatchResult;
+import br.com.udemy.webfluxcourse.model.UserChange;
+import br.com.udemy.webfluxcourse.model.UserLookup;
+import br.com.udemy.webfluxcourse.model.UserPage;
 import br.com.udemy.webfluxcourse.model.request.UserRequest;
+import br.com.udemy.webfluxcourse.model.response.UserBatchResponse;
+import br.com.udemy.webfluxcourse.model.response.UserChangeResponse;
+import br.com.udemy.webfluxcourse.model.response.UserConflictResponse;
+import br.com.udemy.webfluxcourse.model.response.UserLookupResponse;
+import br.com.udemy.webfluxcourse.model.response.UserPageResponse;
 import br.com.udemy.webfluxcourse.model.response.UserResponse;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
-import org.mapstruct.MappingTarget;
 import org.mapstruct.NullValueCheckStrategy;
 import org.mapstruct.NullValuePropertyMappingStrategy;
 
@@ -17,10 +26,22 @@ import org.mapstruct.NullValuePropertyMappingStrategy;
 public interface UserMapper {
 
     @Mapping(target = "id", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "createdAt", ignore = true)
+    @Mapping(target = "updatedAt", ignore = true)
     User toEntity(final UserRequest request);
 
-    @Mapping(target = "id", ignore = true)
-    User toEntity(final UserRequest request, @MappingTarget final User entity);
-
     UserResponse toResponse(final User entity);
+
+    UserPageResponse toResponse(final UserPage page);
+
+    @Mapping(target = "found", expression = "java(lookup.user() != null)")
+    UserLookupResponse toResponse(final UserLookup lookup);
+
+    @Mapping(target = "id", source = "user.id")
+    UserBatchResponse toResponse(final UserBatchResult result);
+
+    UserConflictResponse toResponse(final UserConflict conflict);
+
+    UserChangeResponse toResponse(final UserChange change);
 }
@@ -0,0 +1,56 @@
+package br.com.udemy.webfluxcourse.metrics;
+
+import br.com.udemy.webfluxcourse.config.MongoClientProperties;
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckedInEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionPoolListener;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+@Component
+public class MongoPoolMetrics implements ConnectionPoolListener {
+
+    private final MeterRegistry registry;
+    private final AtomicInteger checkedOut = new AtomicInteger();
+    private final Timer checkoutSuccess;
+
+    public MongoPoolMetrics(final MeterRegistry registry, final MongoClientProperties properties) {
+        this.registry = registry;
+        final var maxSize = properties.pool().maxSize();
+        Gauge.builder("users.mongo.pool.utilization", checkedOut, count -> (double) count.get() / maxSize)
+                .description("Checked out connections divided by the configured maximum pool size")
+                .register(registry);
+        this.checkoutSuccess = checkoutTimer("success");
+    }
+
+    @Override
+    public void connectionCheckedOut(final ConnectionCheckedOutEvent event) {
+        checkedOut.incrementAndGet();
+        checkoutSuccess.record(event.getElapsedTime(NANOSECONDS), NANOSECONDS);
+    }
+
+    @Override
+    public void connectionCheckOutFailed(final ConnectionCheckOutFailedEvent event) {
+        checkoutTimer(event.getReason().name().toLowerCase())
+                .record(event.getElapsedTime(NANOSECONDS), NANOSECONDS);
+    }
+
+    @Override
+    public void connectionCheckedIn(final ConnectionCheckedInEvent event) {
+        checkedOut.decrementAndGet();
+    }
+
+    private Timer checkoutTimer(final String outcome) {
+        return Timer.builder("users.mongo.pool.checkout")
+                .description("Time spent waiting for a pooled connection")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+}
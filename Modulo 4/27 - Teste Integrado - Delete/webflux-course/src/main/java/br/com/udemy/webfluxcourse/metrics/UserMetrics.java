@@ -0,0 +1,106 @@
+package br.com.udemy.webfluxcourse.metrics;
+
+import br.com.udemy.webfluxcourse.service.exception.ObjectNotFoundException;
+import br.com.udemy.webfluxcourse.service.exception.PreconditionFailedException;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.validation.ConstraintViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.support.WebExchangeBindException;
+import reactor.core.observability.micrometer.Micrometer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Component
+public class UserMetrics {
+
+    public static final String SUCCESS = "success";
+    public static final String NOT_FOUND = "not-found";
+    public static final String DUP_KEY = "dup-key";
+    public static final String VERSION_CONFLICT = "version-conflict";
+    public static final String VALIDATION_ERROR = "validation-error";
+    public static final String TIMEOUT = "timeout";
+    public static final String UNAVAILABLE = "unavailable";
+    public static final String ERROR = "error";
+
+    private final MeterRegistry registry;
+    private final Map<String, AtomicInteger> active = new ConcurrentHashMap<>();
+
+    public UserMetrics(final MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public <T> Mono<T> timed(final String layer, final String operation, final Mono<T> source) {
+        return timed(layer, operation, source, SUCCESS);
+    }
+
+    public <T> Mono<T> timed(final String layer, final String operation, final Mono<T> source, final String emptyOutcome) {
+        final var inFlight = active(layer, operation);
+        return source
+                .doOnSubscribe(subscription -> inFlight.incrementAndGet())
+                .doOnSuccess(value -> record(layer, operation, value == null ? emptyOutcome : SUCCESS))
+                .doOnError(ex -> record(layer, operation, outcome(ex)))
+                .doFinally(signal -> inFlight.decrementAndGet())
+                .name("users." + layer)
+                .tag("operation", operation)
+                .tap(Micrometer.metrics(registry));
+    }
+
+    public <T> Flux<T> timed(final String layer, final String operation, final Flux<T> source) {
+        final var inFlight = active(layer, operation);
+        return source
+                .doOnSubscribe(subscription -> inFlight.incrementAndGet())
+                .doOnComplete(() -> record(layer, operation, SUCCESS))
+                .doOnError(ex -> record(layer, operation, outcome(ex)))
+                .doFinally(signal -> inFlight.decrementAndGet())
+                .name("users." + layer)
+                .tag("operation", operation)
+                .tap(Micrometer.metrics(registry));
+    }
+
+    public void record(final String layer, final String operation, final String outcome) {
+        Counter.builder("users." + layer + ".outcomes")
+                .tags("operation", operation, "outcome", outcome)
+                .register(registry)
+                .increment();
+    }
+
+    private AtomicInteger active(final String layer, final String operation) {
+        return active.computeIfAbsent(layer + ":" + operation, key -> registry.gauge(
+                "users." + layer + ".active",
+                Tags.of("operation", operation),
+                new AtomicInteger()
+        ));
+    }
+
+    private String outcome(final Throwable ex) {
+        if (ex instanceof ObjectNotFoundException) {
+            return NOT_FOUND;
+        }
+        if (ex instanceof PreconditionFailedException) {
+            return VERSION_CONFLICT;
+        }
+        if (ex instanceof DuplicateKeyException) {
+            return DUP_KEY;
+        }
+        if (ex instanceof TimeoutException) {
+            return TIMEOUT;
+        }
+        if (ex instanceof CallNotPermittedException || ex instanceof BulkheadFullException) {
+            return UNAVAILABLE;
+        }
+        if (ex instanceof WebExchangeBindException || ex instanceof ConstraintViolationException) {
+            return VALIDATION_ERROR;
+        }
+        return ERROR;
+    }
+}
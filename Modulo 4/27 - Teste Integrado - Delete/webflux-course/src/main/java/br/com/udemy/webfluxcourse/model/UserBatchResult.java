@@ -0,0 +1,23 @@
+package br.com.udemy.webfluxcourse.model;
+
+import br.com.udemy.webfluxcourse.entity.User;
+
+public record UserBatchResult(
+        long index,
+        User user,
+        Status status,
+        String message
+) {
+
+    public enum Status {
+        PENDING,
+        CREATED,
+        INVALID,
+        DUPLICATE,
+        FAILED
+    }
+
+    public UserBatchResult withStatus(final Status status, final String message) {
+        return new UserBatchResult(index, user, status, message);
+    }
+}
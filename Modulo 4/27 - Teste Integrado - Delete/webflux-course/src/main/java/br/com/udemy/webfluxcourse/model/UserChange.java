@@ -0,0 +1,18 @@
+package br.com.udemy.webfluxcourse.model;
+
+import br.com.udemy.webfluxcourse.entity.User;
+
+public record UserChange(
+        Type type,
+        String id,
+        User user,
+        String resumeToken
+) {
+    public enum Type {
+        INSERT,
+        UPDATE,
+        REPLACE,
+        DELETE,
+        INVALIDATE
+    }
+}
@@ -0,0 +1,7 @@
+package br.com.udemy.webfluxcourse.model;
+
+public record UserInsertError(
+        int index,
+        boolean duplicateKey,
+        String message
+) {}
@@ -0,0 +1,8 @@
+package br.com.udemy.webfluxcourse.model;
+
+import br.com.udemy.webfluxcourse.entity.User;
+
+public record UserLookup(
+        String id,
+        User user
+) {}
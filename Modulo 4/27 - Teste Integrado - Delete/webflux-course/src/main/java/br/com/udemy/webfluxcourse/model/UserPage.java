@@ -0,0 +1,10 @@
+package br.com.udemy.webfluxcourse.model;
+
+import br.com.udemy.webfluxcourse.entity.User;
+
+import java.util.List;
+
+public record UserPage(
+        List<User> content,
+        String nextCursor
+) {}
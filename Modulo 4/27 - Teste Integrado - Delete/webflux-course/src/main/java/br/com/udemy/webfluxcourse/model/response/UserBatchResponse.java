@@ -0,0 +1,8 @@
+package br.com.udemy.webfluxcourse.model.response;
+
+public record UserBatchResponse(
+        long index,
+        String id,
+        String status,
+        String message
+) {}
@@ -0,0 +1,8 @@
+package br.com.udemy.webfluxcourse.model.response;
+
+public record UserChangeResponse(
+        String type,
+        String id,
+        UserResponse user,
+        String resumeToken
+) {}
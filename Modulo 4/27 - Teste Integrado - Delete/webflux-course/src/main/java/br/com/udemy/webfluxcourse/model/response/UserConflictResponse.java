@@ -0,0 +1,11 @@
+package br.com.udemy.webfluxcourse.model.response;
+
+import java.time.LocalDateTime;
+
+public record UserConflictResponse(
+        String id,
+        String name,
+        String email,
+        String reason,
+        LocalDateTime detectedAt
+) {}
@@ -0,0 +1,7 @@
+package br.com.udemy.webfluxcourse.model.response;
+
+public record UserLookupResponse(
+        String id,
+        boolean found,
+        UserResponse user
+) {}
@@ -0,0 +1,8 @@
+package br.com.udemy.webfluxcourse.model.response;
+
+import java.util.List;
+
+public record UserPageResponse(
+        List<UserResponse> content,
+        String nextCursor
+) {}
@@ -1,8 +1,11 @@
 package br.com.udemy.webfluxcourse.model.response;
 
+import java.time.Instant;
+
 public record UserResponse(
         String id,
         String name,
         String email,
-        String password
+        Instant createdAt,
+        Instant updatedAt
 ) {}
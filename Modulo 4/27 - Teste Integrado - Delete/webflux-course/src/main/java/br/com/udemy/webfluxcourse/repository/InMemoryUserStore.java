@@ -0,0 +1,411 @@
+package br.com.udemy.webfluxcourse.repository;
+
+import br.com.udemy.webfluxcourse.config.StoreProperties;
+import br.com.udemy.webfluxcourse.entity.User;
+import br.com.udemy.webfluxcourse.entity.UserConflict;
+import br.com.udemy.webfluxcourse.metrics.UserMetrics;
+import br.com.udemy.webfluxcourse.model.UserChange;
+import br.com.udemy.webfluxcourse.model.UserInsertError;
+import br.com.udemy.webfluxcourse.service.exception.ResumeTokenExpiredException;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.FluxSink;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+@Repository
+@ConditionalOnProperty(prefix = "users.store", name = "type", havingValue = "memory")
+public class InMemoryUserStore implements UserStore {
+
+    private static final String LAYER = "repository";
+
+    private final List<ConcurrentMap<String, User>> shards;
+    private final int shardMask;
+    private final ConcurrentMap<String, String> emailIndex = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<String> ids = new ConcurrentSkipListSet<>();
+    private final ConcurrentSkipListSet<ModifiedKey> modified = new ConcurrentSkipListSet<>();
+    private final ConcurrentMap<String, UserConflict> conflicts = new ConcurrentHashMap<>();
+    private final Set<Watcher> watchers = ConcurrentHashMap.newKeySet();
+    private final AtomicReference<ChangeNode> oldestChange;
+    private final AtomicReference<ChangeNode> latestChange;
+    private final int changeHistory;
+    private final int watchBuffer;
+    private final UserMetrics metrics;
+    private final Clock clock;
+
+    @Autowired
+    public InMemoryUserStore(final StoreProperties properties, final UserMetrics metrics) {
+        this(properties, metrics, Clock.systemUTC());
+    }
+
+    InMemoryUserStore(final StoreProperties properties, final UserMetrics metrics, final Clock clock) {
+        final int shardCount = Integer.highestOneBit(Math.max(properties.shards(), 1) * 2 - 1);
+        this.shards = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new ConcurrentHashMap<>());
+        }
+        this.shardMask = shardCount - 1;
+        final ChangeNode start = new ChangeNode(0, null);
+        this.oldestChange = new AtomicReference<>(start);
+        this.latestChange = new AtomicReference<>(start);
+        this.changeHistory = Math.max(properties.changeHistory(), 1);
+        this.watchBuffer = Math.max(properties.watchBuffer(), 1);
+        this.metrics = metrics;
+        this.clock = clock;
+    }
+
+    @Override
+    public Mono<User> save(final User user) {
+        return metrics.timed(LAYER, "save", Mono.fromCallable(() -> insert(user)));
+    }
+
+    @Override
+    public Mono<List<UserInsertError>> insertAll(final List<User> users) {
+        return metrics.timed(LAYER, "insertAll", Mono.fromCallable(() -> {
+            final List<UserInsertError> errors = new ArrayList<>();
+            for (int index = 0; index < users.size(); index++) {
+                try {
+                    insert(users.get(index));
+                } catch (DuplicateKeyException ex) {
+                    errors.add(new UserInsertError(index, true, ex.getMessage()));
+                }
+            }
+            return errors;
+        }));
+    }
+
+    @Override
+    public Mono<User> findById(final String id) {
+        return metrics.timed(LAYER, "findById", Mono.fromCallable(() -> view(shard(id).get(id))), UserMetrics.NOT_FOUND);
+    }
+
+    @Override
+    public Flux<User> findAllById(final Collection<String> ids) {
+        return metrics.timed(LAYER, "findAllById", Flux.fromIterable(ids)
+                .distinct()
+                .mapNotNull(id -> view(shard(id).get(id))));
+    }
+
+    @Override
+    public Flux<User> findAll(final int batchSize) {
+        return metrics.timed(LAYER, "findAll", Flux.fromIterable(shards)
+                .concatMapIterable(ConcurrentMap::values)
+                .map(InMemoryUserStore::view));
+    }
+
+    @Override
+    public Flux<User> findAllAfter(final String afterId, final int limit) {
+        return metrics.timed(LAYER, "findAllAfter", Flux.fromIterable(afterId == null ? ids : ids.tailSet(afterId, false))
+                .mapNotNull(id -> view(shard(id).get(id)))
+                .take(limit));
+    }
+
+    @Override
+    public Flux<User> findModifiedSince(
+            final Instant since, final Instant afterUpdatedAt, final String afterId, final int limit
+    ) {
+        final ModifiedKey from = afterId == null ? new ModifiedKey(since, "") : new ModifiedKey(afterUpdatedAt, afterId);
+        return metrics.timed(LAYER, "findModifiedSince", Flux.defer(() -> Flux.fromIterable(modified.tailSet(from, false)))
+                .mapNotNull(key -> {
+                    final User user = shard(key.id()).get(key.id());
+                    return user != null && key.updatedAt().equals(user.getUpdatedAt()) ? view(user) : null;
+                })
+                .take(limit));
+    }
+
+    @Override
+    public Mono<User> findAndModify(final String id, final Long expectedVersion, final User changes) {
+        return metrics.timed(LAYER, "findAndModify", Mono.fromCallable(() -> modify(id, expectedVersion, changes)),
+                UserMetrics.NOT_FOUND);
+    }
+
+    @Override
+    public Mono<User> findAndRemove(final String id) {
+        return metrics.timed(LAYER, "findAndRemove", Mono.fromCallable(() -> {
+            final User removed = shard(id).remove(id);
+            if (removed == null) {
+                return null;
+            }
+            ids.remove(id);
+            modified.remove(ModifiedKey.of(removed));
+            releaseEmail(removed.getEmail(), id);
+            publish(UserChange.Type.DELETE, id, null);
+            return view(removed);
+        }), UserMetrics.NOT_FOUND);
+    }
+
+    @Override
+    public Mono<Void> saveConflicts(final List<UserConflict> conflicts) {
+        return metrics.timed(LAYER, "saveConflicts", Mono.fromRunnable(() ->
+                conflicts.forEach(conflict -> this.conflicts.put(conflict.getId(), conflict))));
+    }
+
+    // Each subscriber walks the shared change list at its own pace. The list keeps the last change-history entries
+    // for resume tokens, and a subscriber more than watch-buffer changes behind is failed instead of buffered.
+    @Override
+    public Flux<UserChange> watch(final String resumeToken) {
+        return Flux.create(sink -> {
+            final ChangeNode cursor = resumeToken == null ? latestChange.get() : resumeFrom(resumeToken);
+            if (cursor == null) {
+                sink.error(new ResumeTokenExpiredException(String.format(
+                        "Resume token is outside the last %d changes: %s", changeHistory, resumeToken
+                )));
+                return;
+            }
+            final Watcher watcher = new Watcher(sink, cursor);
+            watchers.add(watcher);
+            sink.onDispose(() -> watchers.remove(watcher));
+            sink.onRequest(requested -> watcher.drain());
+        }, FluxSink.OverflowStrategy.ERROR);
+    }
+
+    @Override
+    public Flux<UserConflict> findConflicts(final String email) {
+        return metrics.timed(LAYER, "findConflicts", Flux.defer(() -> Flux.fromStream(conflicts.values().stream()
+                .filter(conflict -> email == null || email.equals(conflict.getEmail()))
+                .sorted(Comparator.comparing(UserConflict::getDetectedAt).reversed()))));
+    }
+
+    private User insert(final User user) {
+        final User stored = copy(user);
+        if (stored.getId() == null) {
+            stored.setId(new ObjectId().toHexString());
+        }
+        if (stored.getVersion() == null) {
+            stored.setVersion(0L);
+        }
+        final Instant now = clock.instant();
+        if (stored.getCreatedAt() == null) {
+            stored.setCreatedAt(now);
+        }
+        stored.setUpdatedAt(now);
+
+        final boolean reserved = reserveEmail(stored.getEmail(), stored.getId());
+        if (shard(stored.getId()).putIfAbsent(stored.getId(), stored) != null) {
+            if (reserved) {
+                releaseEmail(stored.getEmail(), stored.getId());
+            }
+            throw new DuplicateKeyException(String.format(
+                    "E11000 duplicate key error collection: user index: _id_ dup key: { _id: \"%s\" }", stored.getId()
+            ));
+        }
+        ids.add(stored.getId());
+        modified.add(ModifiedKey.of(stored));
+        publish(UserChange.Type.INSERT, stored.getId(), view(stored));
+        return view(stored);
+    }
+
+    private User modify(final String id, final Long expectedVersion, final User changes) {
+        final ConcurrentMap<String, User> shard = shard(id);
+        final boolean reserved = reserveEmail(changes.getEmail(), id);
+
+        while (true) {
+            final User current = shard.get(id);
+            if (current == null || expectedVersion != null && !expectedVersion.equals(current.getVersion())) {
+                if (reserved) {
+                    releaseEmail(changes.getEmail(), id);
+                }
+                return null;
+            }
+            if (changes.getName() == null && changes.getEmail() == null && changes.getPassword() == null) {
+                return view(current);
+            }
+
+            final User updated = copy(current);
+            if (changes.getName() != null) {
+                updated.setName(changes.getName());
+            }
+            if (changes.getEmail() != null) {
+                updated.setEmail(changes.getEmail());
+            }
+            if (changes.getPassword() != null) {
+                updated.setPassword(changes.getPassword());
+            }
+            updated.setVersion(current.getVersion() + 1);
+            updated.setUpdatedAt(clock.instant());
+
+            if (shard.replace(id, current, updated)) {
+                final ModifiedKey before = ModifiedKey.of(current);
+                final ModifiedKey after = ModifiedKey.of(updated);
+                if (!before.equals(after)) {
+                    modified.add(after);
+                    modified.remove(before);
+                }
+                if (current.getEmail() != null && !current.getEmail().equals(updated.getEmail())) {
+                    releaseEmail(current.getEmail(), id);
+                }
+                publish(UserChange.Type.UPDATE, id, view(updated));
+                return view(updated);
+            }
+        }
+    }
+
+    private void publish(final UserChange.Type type, final String id, final User user) {
+        while (true) {
+            final ChangeNode latest = latestChange.get();
+            final ChangeNode next = latest.next.get();
+            if (next != null) {
+                latestChange.compareAndSet(latest, next);
+                continue;
+            }
+            final long sequence = latest.sequence + 1;
+            final ChangeNode node = new ChangeNode(sequence, new UserChange(type, id, user, Long.toString(sequence)));
+            if (latest.next.compareAndSet(null, node)) {
+                latestChange.compareAndSet(latest, node);
+                break;
+            }
+        }
+        for (ChangeNode oldest = oldestChange.get();
+             latestChange.get().sequence - oldest.sequence > changeHistory;
+             oldest = oldestChange.get()) {
+            oldestChange.compareAndSet(oldest, oldest.next.get());
+        }
+        watchers.forEach(Watcher::drain);
+    }
+
+    private ChangeNode resumeFrom(final String resumeToken) {
+        final long sequence;
+        try {
+            sequence = Long.parseLong(resumeToken);
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+        ChangeNode node = oldestChange.get();
+        if (sequence < node.sequence) {
+            return null;
+        }
+        while (node != null && node.sequence < sequence) {
+            node = node.next.get();
+        }
+        return node != null && node.sequence == sequence ? node : null;
+    }
+
+    private boolean reserveEmail(final String email, final String id) {
+        if (email == null) {
+            return false;
+        }
+        final String owner = emailIndex.putIfAbsent(email, id);
+        if (owner == null) {
+            return true;
+        }
+        if (owner.equals(id)) {
+            return false;
+        }
+        throw new DuplicateKeyException(String.format(
+                "E11000 duplicate key error collection: user index: email dup key: { email: \"%s\" }", email
+        ));
+    }
+
+    private void releaseEmail(final String email, final String id) {
+        if (email != null) {
+            emailIndex.remove(email, id);
+        }
+    }
+
+    private ConcurrentMap<String, User> shard(final String id) {
+        final int hash = id.hashCode();
+        return shards.get((hash ^ (hash >>> 16)) & shardMask);
+    }
+
+    private static User copy(final User user) {
+        return User.builder()
+                .id(user.getId())
+                .name(user.getName())
+                .email(user.getEmail())
+                .password(user.getPassword())
+                .version(user.getVersion())
+                .createdAt(user.getCreatedAt())
+                .updatedAt(user.getUpdatedAt())
+                .build();
+    }
+
+    private static User view(final User user) {
+        if (user == null) {
+            return null;
+        }
+        return User.builder()
+                .id(user.getId())
+                .name(user.getName())
+                .email(user.getEmail())
+                .version(user.getVersion())
+                .createdAt(user.getCreatedAt())
+                .updatedAt(user.getUpdatedAt())
+                .build();
+    }
+
+    private static final class ChangeNode {
+
+        private final long sequence;
+        private final UserChange change;
+        private final AtomicReference<ChangeNode> next = new AtomicReference<>();
+
+        ChangeNode(final long sequence, final UserChange change) {
+            this.sequence = sequence;
+            this.change = change;
+        }
+    }
+
+    private final class Watcher {
+
+        private final FluxSink<UserChange> sink;
+        private final AtomicInteger wip = new AtomicInteger();
+        private ChangeNode cursor;
+
+        Watcher(final FluxSink<UserChange> sink, final ChangeNode cursor) {
+            this.sink = sink;
+            this.cursor = cursor;
+        }
+
+        void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                ChangeNode next;
+                while (!sink.isCancelled() && sink.requestedFromDownstream() > 0 && (next = cursor.next.get()) != null) {
+                    cursor = next;
+                    sink.next(next.change);
+                }
+                if (latestChange.get().sequence - cursor.sequence > watchBuffer) {
+                    sink.error(new IllegalStateException(String.format(
+                            "Watcher fell more than %d changes behind at resume token %d", watchBuffer, cursor.sequence
+                    )));
+                    return;
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+
+    private record ModifiedKey(Instant updatedAt, String id) implements Comparable<ModifiedKey> {
+
+        private static final Comparator<ModifiedKey> ORDER = Comparator.comparing(ModifiedKey::updatedAt)
+                .thenComparing(ModifiedKey::id);
+
+        static ModifiedKey of(final User user) {
+            return new ModifiedKey(user.getUpdatedAt(), user.getId());
+        }
+
+        @Override
+        public int compareTo(final ModifiedKey other) {
+            return ORDER.compare(this, other);
+        }
+    }
+}
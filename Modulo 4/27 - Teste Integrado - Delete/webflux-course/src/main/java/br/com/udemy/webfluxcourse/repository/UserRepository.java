@@ -1,35 +1,223 @@
 package br.com.udemy.webfluxcourse.repository;
 
 import br.com.udemy.webfluxcourse.entity.User;
+import br.com.udemy.webfluxcourse.entity.UserConflict;
+import br.com.udemy.webfluxcourse.metrics.UserMetrics;
+import br.com.udemy.webfluxcourse.model.UserChange;
+import br.com.udemy.webfluxcourse.model.UserInsertError;
+import br.com.udemy.webfluxcourse.resilience.MongoCallPolicies;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.changestream.FullDocument;
 import lombok.RequiredArgsConstructor;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 @RequiredArgsConstructor
-public class UserRepository {
+@ConditionalOnProperty(prefix = "users.store", name = "type", havingValue = "mongo", matchIfMissing = true)
+public class UserRepository implements UserStore {
+
+    private static final String[] READ_FIELDS = {"id", "name", "email", "version", "createdAt", "updatedAt"};
+
+    private static final String LAYER = "repository";
 
     private final ReactiveMongoTemplate mongoTemplate;
+    private final UserMetrics metrics;
+    private final MongoCallPolicies policies;
 
+    @Override
     public Mono<User> save(final User user) {
-        return mongoTemplate.save(user);
+        return metrics.timed(LAYER, "save", policies.write(mongoTemplate.save(user)));
+    }
+
+    @Override
+    public Mono<List<UserInsertError>> insertAll(final List<User> users) {
+        return metrics.timed(LAYER, "insertAll", policies.write(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, User.class)
+                .insert(users)
+                .execute()
+                .map(result -> List.<UserInsertError>of())
+                .onErrorResume(ex -> bulkWriteErrors(ex) != null, ex -> Mono.just(bulkWriteErrors(ex).stream()
+                        .map(error -> new UserInsertError(
+                                error.getIndex(),
+                                ErrorCategory.fromErrorCode(error.getCode()) == ErrorCategory.DUPLICATE_KEY,
+                                error.getMessage()
+                        ))
+                        .toList()))));
     }
 
+    @Override
     public Mono<User> findById(String id) {
-        return mongoTemplate.findById(id, User.class);
+        return metrics.timed(LAYER, "findById",
+                policies.read(mongoTemplate.findOne(readQuery(new Query(Criteria.where("id").is(id))), User.class)),
+                UserMetrics.NOT_FOUND);
+    }
+
+    @Override
+    public Flux<User> findAllById(Collection<String> ids) {
+        return metrics.timed(LAYER, "findAllById",
+                policies.read(mongoTemplate.find(readQuery(new Query(Criteria.where("id").in(ids))), User.class)));
     }
 
-    public Flux<User> findAll() {
-        return mongoTemplate.findAll(User.class);
+    @Override
+    public Flux<User> findAll(int batchSize) {
+        return metrics.timed(LAYER, "findAll",
+                policies.stream(mongoTemplate.find(readQuery(new Query().cursorBatchSize(batchSize)), User.class)));
     }
 
+    @Override
+    public Flux<User> findAllAfter(String afterId, int limit) {
+        Query query = readQuery(new Query().with(Sort.by(Sort.Direction.ASC, "id")).limit(limit));
+        if (afterId != null) {
+            query.addCriteria(Criteria.where("id").gt(afterId));
+        }
+        return metrics.timed(LAYER, "findAllAfter", policies.read(mongoTemplate.find(query, User.class)));
+    }
+
+    @Override
+    public Flux<User> findModifiedSince(Instant since, Instant afterUpdatedAt, String afterId, int limit) {
+        Query query = readQuery(new Query().with(Sort.by(Sort.Direction.ASC, "updatedAt", "id")).limit(limit));
+        if (afterId == null) {
+            query.addCriteria(Criteria.where("updatedAt").gte(since));
+        } else {
+            query.addCriteria(new Criteria().orOperator(
+                    Criteria.where("updatedAt").gt(afterUpdatedAt),
+                    Criteria.where("updatedAt").is(afterUpdatedAt).and("id").gt(afterId)
+            ));
+        }
+        return metrics.timed(LAYER, "findModifiedSince", policies.read(mongoTemplate.find(query, User.class)));
+    }
+
+    @Override
+    public Mono<User> findAndModify(String id, Long expectedVersion, User changes) {
+        Query query = readQuery(new Query(Criteria.where("id").is(id)));
+        if (expectedVersion != null) {
+            query.addCriteria(Criteria.where("version").is(expectedVersion));
+        }
+        Update update = toUpdate(changes);
+        if (update.getUpdateObject().isEmpty()) {
+            return metrics.timed(LAYER, "findAndModify", policies.read(mongoTemplate.findOne(query, User.class)), UserMetrics.NOT_FOUND);
+        }
+        return metrics.timed(LAYER, "findAndModify", policies.write(
+                mongoTemplate.findAndModify(query, update.inc("version", 1).set("updatedAt", Instant.now()), FindAndModifyOptions.options().returnNew(true), User.class)),
+                UserMetrics.NOT_FOUND);
+    }
+
+    @Override
     public Mono<User> findAndRemove(String id) {
-        Query query = new Query();
+        Query query = readQuery(new Query());
         Criteria where = Criteria.where("id").is(id);
-        return mongoTemplate.findAndRemove(query.addCriteria(where), User.class);
+        return metrics.timed(LAYER, "findAndRemove", policies.write(mongoTemplate.findAndRemove(query.addCriteria(where), User.class)),
+                UserMetrics.NOT_FOUND);
+    }
+
+    @Override
+    public Mono<Void> saveConflicts(List<UserConflict> conflicts) {
+        return metrics.timed(LAYER, "saveConflicts", policies.write(Flux.fromIterable(conflicts)
+                .concatMap(mongoTemplate::save)
+                .then()));
+    }
+
+    @Override
+    public Flux<UserConflict> findConflicts(String email) {
+        Query query = new Query().with(Sort.by(Sort.Direction.DESC, "detectedAt"));
+        if (email != null) {
+            query.addCriteria(Criteria.where("email").is(email));
+        }
+        return metrics.timed(LAYER, "findConflicts", policies.read(mongoTemplate.find(query, UserConflict.class)));
+    }
+
+    @Override
+    public Flux<UserChange> watch(String resumeToken) {
+        return mongoTemplate.changeStream(User.class)
+                .withOptions(options -> {
+                    options.fullDocumentLookup(FullDocument.UPDATE_LOOKUP);
+                    if (resumeToken != null) {
+                        options.resumeAfter(BsonDocument.parse(resumeToken));
+                    }
+                })
+                .watchCollection(User.class)
+                .listen()
+                .mapNotNull(this::toChange);
+    }
+
+    private Query readQuery(Query query) {
+        query.fields().include(READ_FIELDS);
+        return query;
+    }
+
+    private Update toUpdate(User changes) {
+        Document document = new Document();
+        mongoTemplate.getConverter().write(changes, document);
+
+        Update update = new Update();
+        document.forEach((key, value) -> {
+            if (!"_id".equals(key) && !"_class".equals(key)) {
+                update.set(key, value);
+            }
+        });
+        return update;
+    }
+
+    private UserChange toChange(ChangeStreamEvent<User> event) {
+        if (event.getOperationType() == null) {
+            return null;
+        }
+        UserChange.Type type = switch (event.getOperationType()) {
+            case INSERT -> UserChange.Type.INSERT;
+            case UPDATE -> UserChange.Type.UPDATE;
+            case REPLACE -> UserChange.Type.REPLACE;
+            case DELETE -> UserChange.Type.DELETE;
+            case INVALIDATE, DROP, RENAME, DROP_DATABASE -> UserChange.Type.INVALIDATE;
+            default -> null;
+        };
+        if (type == null) {
+            return null;
+        }
+
+        User user = event.getBody();
+        if (user != null) {
+            user.setPassword(null);
+        }
+        BsonDocument key = event.getRaw() != null ? event.getRaw().getDocumentKey() : null;
+        BsonValue id = key != null ? key.get("_id") : null;
+        BsonValue token = event.getResumeToken();
+        return new UserChange(
+                type,
+                id == null ? null : id.isObjectId() ? id.asObjectId().getValue().toHexString() : id.asString().getValue(),
+                user,
+                token == null ? null : token.asDocument().toJson()
+        );
+    }
+
+    private List<BulkWriteError> bulkWriteErrors(Throwable ex) {
+        if (ex instanceof BulkOperationException bulkOperationException) {
+            return bulkOperationException.getErrors();
+        }
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoBulkWriteException bulkWriteException) {
+                return bulkWriteException.getWriteErrors();
+            }
+        }
+        return null;
     }
 }
@@ -0,0 +1,39 @@
+package br.com.udemy.webfluxcourse.repository;
+
+import br.com.udemy.webfluxcourse.entity.User;
+import br.com.udemy.webfluxcourse.entity.UserConflict;
+import br.com.udemy.webfluxcourse.model.UserChange;
+import br.com.udemy.webfluxcourse.model.UserInsertError;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface UserStore {
+
+    Mono<User> save(final User user);
+
+    Mono<List<UserInsertError>> insertAll(final List<User> users);
+
+    Mono<User> findById(final String id);
+
+    Flux<User> findAllById(final Collection<String> ids);
+
+    Flux<User> findAll(final int batchSize);
+
+    Flux<User> findAllAfter(final String afterId, final int limit);
+
+    Flux<User> findModifiedSince(final Instant since, final Instant afterUpdatedAt, final String afterId, final int limit);
+
+    Mono<User> findAndModify(final String id, final Long expectedVersion, final User changes);
+
+    Mono<User> findAndRemove(final String id);
+
+    Mono<Void> saveConflicts(final List<UserConflict> conflicts);
+
+    Flux<UserConflict> findConflicts(final String email);
+
+    Flux<UserChange> watch(final String resumeToken);
+}
@@ -0,0 +1,107 @@
+package br.com.udemy.webfluxcourse.resilience;
+
+import br.com.udemy.webfluxcourse.config.ResilienceProperties;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+
+@Component
+public class MongoCallPolicies {
+
+    private final boolean enabled;
+    private final Policy read;
+    private final Policy write;
+    private final Policy stream;
+
+    public MongoCallPolicies(final ResilienceProperties properties, final MeterRegistry meterRegistry) {
+        final var bulkheads = BulkheadRegistry.ofDefaults();
+        final var circuitBreakers = CircuitBreakerRegistry.ofDefaults();
+
+        this.enabled = properties.enabled();
+        this.read = new Policy("read", properties.read(), bulkheads, circuitBreakers);
+        this.write = new Policy("write", properties.write(), bulkheads, circuitBreakers);
+        this.stream = new Policy("stream", properties.stream(), bulkheads, circuitBreakers);
+
+        TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheads).bindTo(meterRegistry);
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakers).bindTo(meterRegistry);
+    }
+
+    public <T> Mono<T> read(final Mono<T> source) {
+        return enabled ? read.apply(source) : source;
+    }
+
+    public <T> Flux<T> read(final Flux<T> source) {
+        return enabled ? read.apply(source) : source;
+    }
+
+    public <T> Mono<T> write(final Mono<T> source) {
+        return enabled ? write.apply(source) : source;
+    }
+
+    public <T> Flux<T> stream(final Flux<T> source) {
+        return enabled ? stream.apply(source) : source;
+    }
+
+    private static final class Policy {
+
+        private final String type;
+        private final Duration timeout;
+        private final Bulkhead bulkhead;
+        private final CircuitBreaker circuitBreaker;
+
+        private Policy(
+                final String type,
+                final ResilienceProperties.Policy properties,
+                final BulkheadRegistry bulkheads,
+                final CircuitBreakerRegistry circuitBreakers
+        ) {
+            this.type = type;
+            this.timeout = properties.timeout();
+            this.bulkhead = bulkheads.bulkhead("users-mongo-" + type, BulkheadConfig.custom()
+                    .maxConcurrentCalls(properties.maxConcurrentCalls())
+                    .maxWaitDuration(Duration.ZERO)
+                    .build());
+            this.circuitBreaker = circuitBreakers.circuitBreaker("users-mongo-" + type, CircuitBreakerConfig.custom()
+                    .failureRateThreshold(properties.failureRateThreshold())
+                    .slidingWindowSize(properties.slidingWindowSize())
+                    .minimumNumberOfCalls(properties.minimumNumberOfCalls())
+                    .waitDurationInOpenState(properties.waitDurationInOpenState())
+                    .ignoreExceptions(BulkheadFullException.class, DataIntegrityViolationException.class)
+                    .build());
+        }
+
+        private <T> Mono<T> apply(final Mono<T> source) {
+            return source
+                    .transformDeferred(BulkheadOperator.of(bulkhead))
+                    .timeout(timeout, Mono.error(this::timedOut))
+                    .transformDeferred(CircuitBreakerOperator.of(circuitBreaker));
+        }
+
+        private <T> Flux<T> apply(final Flux<T> source) {
+            return source
+                    .transformDeferred(BulkheadOperator.of(bulkhead))
+                    .timeout(Mono.delay(timeout), item -> Mono.never(), Flux.error(this::timedOut))
+                    .transformDeferred(CircuitBreakerOperator.of(circuitBreaker));
+        }
+
+        private TimeoutException timedOut() {
+            return new TimeoutException(String.format("Mongo %s call timed out after %d ms", type, timeout.toMillis()));
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package br.com.udemy.webfluxcourse.service;
+
+import br.com.udemy.webfluxcourse.config.BatchLoaderProperties;
+import br.com.udemy.webfluxcourse.entity.User;
+import br.com.udemy.webfluxcourse.repository.UserStore;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.bson.types.ObjectId;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.context.ContextView;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+public class UserBatchLoader {
+
+    private final UserStore repository;
+    private final BatchLoaderProperties properties;
+    private final DistributionSummary batchSize;
+    private final DistributionSummary fillRatio;
+
+    private volatile FluxSink<LoadRequest> requests;
+    private volatile boolean closed;
+    private final Disposable subscription;
+
+    public UserBatchLoader(
+            final UserStore repository,
+            final BatchLoaderProperties properties,
+            final MeterRegistry meterRegistry
+    ) {
+        this.repository = repository;
+        this.properties = properties;
+        this.batchSize = DistributionSummary.builder("users.batch-loader.batch.size")
+                .description("Number of ids merged into a single $in query")
+                .register(meterRegistry);
+        this.fillRatio = DistributionSummary.builder("users.batch-loader.batch.fill.ratio")
+                .description("Batch size divided by the configured maximum batch size")
+                .register(meterRegistry);
+
+        this.subscription = properties.enabled()
+                ? Flux.<LoadRequest>create(sink -> this.requests = sink)
+                        .bufferTimeout(properties.maxBatchSize(), properties.window(), true)
+                        .doOnDiscard(LoadRequest.class, request -> request.result().tryEmitError(shutdownError()))
+                        .flatMap(this::dispatch, properties.concurrency())
+                        .subscribe()
+                : null;
+    }
+
+    public boolean isEnabled() {
+        return subscription != null;
+    }
+
+    // Ids are dispatched in canonical form because results are matched back by user.getId().
+    public Mono<User> load(final String id) {
+        if (!ObjectId.isValid(id)) {
+            return Mono.empty();
+        }
+        return Mono.deferContextual(context -> {
+            if (closed) {
+                return Mono.error(shutdownError());
+            }
+            final Sinks.One<User> result = Sinks.one();
+            requests.next(new LoadRequest(new ObjectId(id).toHexString(), context, result));
+            return result.asMono();
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        closed = true;
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+
+    private Mono<Void> dispatch(final List<LoadRequest> batch) {
+        batchSize.record(batch.size());
+        fillRatio.record((double) batch.size() / properties.maxBatchSize());
+
+        final Map<String, List<LoadRequest>> pending = new ConcurrentHashMap<>();
+        for (LoadRequest request : batch) {
+            pending.computeIfAbsent(request.id(), id -> new ArrayList<>(1)).add(request);
+        }
+
+        return repository.findAllById(List.copyOf(pending.keySet()))
+                .doOnNext(user -> {
+                    final var waiting = pending.remove(user.getId());
+                    if (waiting != null) {
+                        waiting.forEach(request -> request.result().tryEmitValue(user));
+                    }
+                })
+                .then(Mono.fromRunnable(() -> pending.values()
+                        .forEach(waiting -> waiting.forEach(request -> request.result().tryEmitEmpty()))))
+                .onErrorResume(ex -> {
+                    fail(pending, ex);
+                    return Mono.empty();
+                })
+                .doOnCancel(() -> fail(pending, shutdownError()))
+                .then()
+                .contextWrite(batch.get(0).context());
+    }
+
+    private static void fail(final Map<String, List<LoadRequest>> pending, final Throwable error) {
+        pending.values().forEach(waiting -> waiting.forEach(request -> request.result().tryEmitError(error)));
+    }
+
+    private static IllegalStateException shutdownError() {
+        return new IllegalStateException("User batch loader is shut down");
+    }
+
+    private record LoadRequest(String id, ContextView context, Sinks.One<User> result) {
+    }
+}
@@ -1,41 +1,277 @@
 package br.com.udemy.webfluxcourse.service;
 
+import br.com.udemy.webfluxcourse.cache.UserCache;
+import br.com.udemy.webfluxcourse.changes.UserChangeFeed;
+import br.com.udemy.webfluxcourse.config.BatchProperties;
+import br.com.udemy.webfluxcourse.config.MultiGetProperties;
+import br.com.udemy.webfluxcourse.config.PaginationProperties;
+import br.com.udemy.webfluxcourse.config.StreamProperties;
 import br.com.udemy.webfluxcourse.entity.User;
+import br.com.udemy.webfluxcourse.entity.UserConflict;
 import br.com.udemy.webfluxcourse.mapper.UserMapper;
+import br.com.udemy.webfluxcourse.metrics.UserMetrics;
+import br.com.udemy.webfluxcourse.model.UserBatchResult;
+import br.com.udemy.webfluxcourse.model.UserChange;
+import br.com.udemy.webfluxcourse.model.UserInsertError;
+import br.com.udemy.webfluxcourse.model.UserLookup;
+import br.com.udemy.webfluxcourse.model.UserPage;
 import br.com.udemy.webfluxcourse.model.request.UserRequest;
-import br.com.udemy.webfluxcourse.repository.UserRepository;
+import br.com.udemy.webfluxcourse.repository.UserStore;
+import br.com.udemy.webfluxcourse.service.exception.DuplicateKeyMessages;
+import br.com.udemy.webfluxcourse.service.exception.InvalidCursorException;
+import br.com.udemy.webfluxcourse.service.exception.InvalidIdException;
 import br.com.udemy.webfluxcourse.service.exception.ObjectNotFoundException;
+import br.com.udemy.webfluxcourse.service.exception.PreconditionFailedException;
+import br.com.udemy.webfluxcourse.service.exception.TooManyIdsException;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static br.com.udemy.webfluxcourse.model.UserBatchResult.Status.CREATED;
+import static br.com.udemy.webfluxcourse.model.UserBatchResult.Status.DUPLICATE;
+import static br.com.udemy.webfluxcourse.model.UserBatchResult.Status.FAILED;
+import static br.com.udemy.webfluxcourse.model.UserBatchResult.Status.INVALID;
+import static br.com.udemy.webfluxcourse.model.UserBatchResult.Status.PENDING;
+
 @Service
 @RequiredArgsConstructor
 public class UserService {
 
-    private final UserRepository repository;
+    private static final String LAYER = "service";
+
+    private final UserStore repository;
     private final UserMapper mapper;
+    private final UserCache cache;
+    private final UserBatchLoader batchLoader;
+    private final UserWriteBehind writeBehind;
+    private final UserChangeFeed changeFeed;
+    private final PaginationProperties paginationProperties;
+    private final StreamProperties streamProperties;
+    private final BatchProperties batchProperties;
+    private final Validator validator;
+    private final MultiGetProperties multiGetProperties;
+    private final UserMetrics metrics;
+
+    private final Map<String, Mono<User>> inFlight = new ConcurrentHashMap<>();
 
     public Mono<User> save(final UserRequest request) {
-        return repository.save(mapper.toEntity(request));
+        final var user = mapper.toEntity(request);
+        return metrics.timed(LAYER, "save", writeBehind.isEnabled() ? writeBehind.submit(user) : repository.save(user));
+    }
+
+    public Flux<UserChange> watchChanges(final String resumeToken) {
+        return changeFeed.subscribe(resumeToken == null || resumeToken.isBlank() ? null : resumeToken);
+    }
+
+    public Flux<UserConflict> findConflicts(final String email) {
+        return metrics.timed(LAYER, "findConflicts", writeBehind.findConflicts(email));
+    }
+
+    public Flux<UserBatchResult> saveAll(final Flux<UserRequest> requests) {
+        return metrics.timed(LAYER, "saveAll", requests.index()
+                .map(tuple -> validate(tuple.getT1(), tuple.getT2()))
+                .buffer(batchProperties.chunkSize())
+                .flatMapSequential(this::insertChunk, batchProperties.concurrency())
+                .flatMapIterable(results -> results));
     }
 
     public Mono<User> findById(final String id) {
-        return handleNotFound(repository.findById(id), id);
+        return metrics.timed(LAYER, "findById", cache.get(id, this::singleFlight));
+    }
+
+    public Flux<UserLookup> findAllById(final List<String> ids) {
+        return metrics.timed(LAYER, "findAllById", Flux.defer(() -> {
+            final var invalid = ids.stream().filter(id -> !ObjectId.isValid(id)).toList();
+            if (!invalid.isEmpty()) {
+                return Flux.error(new InvalidIdException(String.format("Invalid ids: %s", invalid)));
+            }
+            // Mongo matches any ObjectId spelling, so results are matched against the canonical form.
+            final var missing = ids.stream()
+                    .map(id -> new ObjectId(id).toHexString())
+                    .collect(Collectors.toCollection(LinkedHashSet::new));
+            if (missing.size() > multiGetProperties.maxIds()) {
+                return Flux.error(new TooManyIdsException(String.format(
+                        "Too many ids. Requested: %d, Max: %d", missing.size(), multiGetProperties.maxIds()
+                )));
+            }
+            if (missing.isEmpty()) {
+                return Flux.empty();
+            }
+
+            return repository.findAllById(List.copyOf(missing))
+                    .doOnNext(user -> missing.remove(user.getId()))
+                    .map(user -> new UserLookup(user.getId(), user))
+                    .concatWith(Flux.defer(() -> Flux.fromIterable(missing).map(id -> new UserLookup(id, null))));
+        }));
     }
 
     public Flux<User> findAll() {
-        return repository.findAll();
+        final int batchSize = streamProperties.batchSize();
+        return metrics.timed(LAYER, "findAll", repository.findAll(batchSize).limitRate(batchSize));
+    }
+
+    public Flux<User> findModifiedSince(final Instant since) {
+        final int batchSize = streamProperties.batchSize();
+        return metrics.timed(LAYER, "findModifiedSince", modifiedPage(since, null, batchSize)
+                .expand(page -> page.size() < batchSize
+                        ? Mono.empty()
+                        : modifiedPage(since, page.get(page.size() - 1), batchSize))
+                .concatMapIterable(page -> page));
+    }
+
+    public Mono<UserPage> findAll(final String cursor, final Integer limit) {
+        final int pageSize = pageSize(limit);
+        return metrics.timed(LAYER, "findPage", Mono.fromCallable(() -> decodeCursor(cursor))
+                .flatMapMany(afterId -> repository.findAllAfter(afterId.isEmpty() ? null : afterId, pageSize + 1))
+                .collectList()
+                .map(users -> {
+                    if (users.size() <= pageSize) {
+                        return new UserPage(users, null);
+                    }
+                    final var content = users.subList(0, pageSize);
+                    return new UserPage(content, encodeCursor(content.get(pageSize - 1).getId()));
+                }));
     }
 
-    public Mono<User> update(final String id, final UserRequest request) {
-        return findById(id).map(entity -> mapper.toEntity(request, entity))
-                .flatMap(repository::save);
+    public Mono<User> update(final String id, final Long expectedVersion, final UserRequest request) {
+        final var updated = invalidate(id)
+                .then(Mono.defer(() -> repository.findAndModify(id, expectedVersion, mapper.toEntity(request))));
+        return metrics.timed(LAYER, "update", (expectedVersion == null
+                ? handleNotFound(updated, id)
+                : handlePreconditionFailed(updated, id, expectedVersion))
+                .flatMap(user -> invalidate(id).thenReturn(user)));
     }
 
     public Mono<User> delete(final String id) {
-        return handleNotFound(repository.findAndRemove(id), id);
+        return metrics.timed(LAYER, "delete", handleNotFound(invalidate(id).then(Mono.defer(() -> repository.findAndRemove(id))), id)
+                .flatMap(user -> invalidate(id).thenReturn(user)));
+    }
+
+    private Mono<List<User>> modifiedPage(final Instant since, final User after, final int limit) {
+        return after == null
+                ? repository.findModifiedSince(since, null, null, limit).collectList()
+                : repository.findModifiedSince(since, after.getUpdatedAt(), after.getId(), limit).collectList();
+    }
+
+    private Mono<User> singleFlight(final String id) {
+        return Mono.defer(() -> inFlight.computeIfAbsent(id, this::sharedLookup));
+    }
+
+    // Removes only its own entry, so a lookup dropped by a write cannot remove the one started after it.
+    private Mono<User> sharedLookup(final String id) {
+        final AtomicReference<Mono<User>> self = new AtomicReference<>();
+        final Mono<User> shared = handleNotFound(lookup(id), id)
+                .doFinally(signal -> inFlight.remove(id, self.get()))
+                .cache();
+        self.set(shared);
+        return shared;
+    }
+
+    // A lookup that started before a write must not be joined afterwards, or its stale result goes back in the cache.
+    private Mono<Void> invalidate(final String id) {
+        return Mono.defer(() -> {
+            inFlight.remove(id);
+            return cache.evict(id);
+        });
+    }
+
+    private Mono<User> lookup(final String id) {
+        return batchLoader.isEnabled() ? batchLoader.load(id) : repository.findById(id);
+    }
+
+    private UserBatchResult validate(final long index, final UserRequest request) {
+        final var violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            final var message = violations.stream()
+                    .sorted(Comparator.comparing(violation -> violation.getPropertyPath().toString()))
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .collect(Collectors.joining(", "));
+            return new UserBatchResult(index, null, INVALID, message);
+        }
+
+        final var user = mapper.toEntity(request);
+        user.setId(new ObjectId().toHexString());
+        user.setVersion(0L);
+        user.setCreatedAt(Instant.now());
+        user.setUpdatedAt(user.getCreatedAt());
+        return new UserBatchResult(index, user, PENDING, null);
+    }
+
+    private Mono<List<UserBatchResult>> insertChunk(final List<UserBatchResult> chunk) {
+        final var pending = chunk.stream().filter(result -> result.status() == PENDING).toList();
+        if (pending.isEmpty()) {
+            return Mono.just(chunk);
+        }
+
+        return repository.insertAll(pending.stream().map(UserBatchResult::user).toList())
+                .map(errors -> {
+                    final var failures = new UserBatchResult[pending.size()];
+                    for (UserInsertError error : errors) {
+                        final var result = pending.get(error.index());
+                        failures[error.index()] = error.duplicateKey()
+                                ? result.withStatus(DUPLICATE, DuplicateKeyMessages.describe(error.message()))
+                                : result.withStatus(FAILED, error.message());
+                    }
+
+                    final List<UserBatchResult> results = new ArrayList<>(chunk.size());
+                    int position = 0;
+                    for (UserBatchResult result : chunk) {
+                        if (result.status() != PENDING) {
+                            results.add(result);
+                        } else {
+                            final var failure = failures[position++];
+                            results.add(failure != null ? failure : result.withStatus(CREATED, null));
+                        }
+                    }
+                    return results;
+                });
+    }
+
+    private int pageSize(final Integer limit) {
+        if (limit == null || limit < 1) {
+            return Math.min(paginationProperties.defaultLimit(), paginationProperties.maxLimit());
+        }
+        return Math.min(limit, paginationProperties.maxLimit());
+    }
+
+    private String encodeCursor(final String id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(id.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String decodeCursor(final String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return "";
+        }
+        try {
+            final var id = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (ObjectId.isValid(id)) {
+                return id;
+            }
+        } catch (IllegalArgumentException ignored) {
+            // falls through to the invalid cursor error below
+        }
+        throw new InvalidCursorException(String.format("Invalid cursor: %s", cursor));
+    }
+
+    private <T> Mono<T> handlePreconditionFailed(Mono<T> mono, String id, Long expectedVersion) {
+        return mono.switchIfEmpty(Mono.error(new PreconditionFailedException(
+                String.format("Precondition failed. Id: %s, Version: %d", id, expectedVersion)
+        )));
     }
 
     private <T> Mono<T> handleNotFound(Mono<T> mono, String id) {
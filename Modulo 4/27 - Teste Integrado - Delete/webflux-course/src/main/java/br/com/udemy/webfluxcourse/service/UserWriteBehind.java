@@ -0,0 +1,255 @@
+package br.com.udemy.webfluxcourse.service;
+
+import br.com.udemy.webfluxcourse.config.WriteBehindProperties;
+import br.com.udemy.webfluxcourse.entity.User;
+import br.com.udemy.webfluxcourse.entity.UserConflict;
+import br.com.udemy.webfluxcourse.journal.UserJournal;
+import br.com.udemy.webfluxcourse.model.UserInsertError;
+import br.com.udemy.webfluxcourse.repository.UserStore;
+import br.com.udemy.webfluxcourse.service.exception.DuplicateKeyMessages;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.bson.types.ObjectId;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Component
+public class UserWriteBehind {
+
+    private static final String ID_DUP_KEY = "_id_ dup key";
+
+    private final UserStore repository;
+    private final WriteBehindProperties properties;
+    private final ObjectMapper objectMapper;
+    private final Deque<Entry> queue = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Counter journaled;
+    private final Counter writeThrough;
+    private final Counter created;
+    private final Counter replayed;
+    private final Counter conflicts;
+    private final Counter failures;
+
+    private final UserJournal journal;
+    private final Disposable drainer;
+    private volatile boolean lastFlushFailed;
+
+    public UserWriteBehind(
+            final UserStore repository,
+            final WriteBehindProperties properties,
+            final ObjectMapper objectMapper,
+            final MeterRegistry meterRegistry
+    ) throws IOException {
+        this.repository = repository;
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        this.journaled = accepted(meterRegistry, "journal");
+        this.writeThrough = accepted(meterRegistry, "write-through");
+        this.created = flushed(meterRegistry, "created");
+        this.replayed = flushed(meterRegistry, "replayed");
+        this.conflicts = flushed(meterRegistry, "conflict");
+        this.failures = Counter.builder("users.write-behind.flush.failures")
+                .description("Flush attempts that exhausted their retries and were put back in the queue")
+                .register(meterRegistry);
+        meterRegistry.gauge("users.write-behind.pending", pending);
+
+        if (!properties.enabled()) {
+            this.journal = null;
+            this.drainer = null;
+            return;
+        }
+
+        this.journal = UserJournal.open(
+                Path.of(properties.directory()), (int) properties.segmentSize().toBytes(), properties.forceOnAppend()
+        );
+        for (UserJournal.Record record : journal.recovered()) {
+            queue.offerLast(new Entry(record.sequence(), objectMapper.readValue(record.payload(), Payload.class).toUser()));
+            pending.incrementAndGet();
+        }
+        this.drainer = Flux.interval(properties.flushInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> drain().repeat(() -> pending.get() >= properties.batchSize()), 1)
+                .subscribe();
+    }
+
+    public boolean isEnabled() {
+        return journal != null;
+    }
+
+    public Mono<User> submit(final User user) {
+        final Mono<User> append = Mono.fromCallable(() -> {
+            if (pending.getAndIncrement() >= properties.maxPending()) {
+                pending.decrementAndGet();
+                return null;
+            }
+            try {
+                final var payload = new Payload(
+                        new ObjectId().toHexString(), user.getName(), user.getEmail(), user.getPassword(), Instant.now()
+                );
+                final byte[] bytes = objectMapper.writeValueAsBytes(payload);
+                synchronized (journal) {
+                    queue.offerLast(new Entry(journal.append(bytes), payload.toUser()));
+                }
+                journaled.increment();
+                return payload.toUser();
+            } catch (Exception ex) {
+                pending.decrementAndGet();
+                throw ex;
+            }
+        });
+
+        return (properties.forceOnAppend() ? append.subscribeOn(Schedulers.boundedElastic()) : append)
+                .switchIfEmpty(Mono.defer(() -> {
+                    writeThrough.increment();
+                    return repository.save(user);
+                }));
+    }
+
+    public Flux<UserConflict> findConflicts(final String email) {
+        return repository.findConflicts(email);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (drainer == null) {
+            return;
+        }
+        drainer.dispose();
+        try {
+            drain().repeat(() -> pending.get() > 0 && !lastFlushFailed)
+                    .then()
+                    .block(properties.shutdownTimeout());
+        } catch (RuntimeException ignored) {
+            // whatever is still pending stays in the journal and is replayed on the next start
+        } finally {
+            journal.close();
+        }
+    }
+
+    private Mono<Void> drain() {
+        return Mono.defer(() -> {
+            final List<Entry> batch = new ArrayList<>(properties.batchSize());
+            while (batch.size() < properties.batchSize()) {
+                final Entry entry = queue.pollFirst();
+                if (entry == null) {
+                    break;
+                }
+                batch.add(entry);
+            }
+            if (batch.isEmpty()) {
+                return Mono.empty();
+            }
+            pending.addAndGet(-batch.size());
+            final Instant flushedAt = Instant.now();
+            batch.forEach(entry -> entry.user().setUpdatedAt(flushedAt));
+
+            return repository.insertAll(batch.stream().map(Entry::user).toList())
+                    .retryWhen(Retry.backoff(properties.maxRetries(), properties.retryBackoff()))
+                    .flatMap(errors -> recordConflicts(batch, errors))
+                    .then(Mono.fromRunnable(() -> checkpoint(batch.get(batch.size() - 1).sequence()))
+                            .subscribeOn(Schedulers.boundedElastic()))
+                    .doOnSuccess(ignored -> lastFlushFailed = false)
+                    .onErrorResume(ex -> {
+                        failures.increment();
+                        lastFlushFailed = true;
+                        requeue(batch);
+                        return Mono.empty();
+                    })
+                    .doOnCancel(() -> requeue(batch))
+                    .then();
+        });
+    }
+
+    private Mono<Void> recordConflicts(final List<Entry> batch, final List<UserInsertError> errors) {
+        final List<UserConflict> detected = new ArrayList<>();
+        int alreadyStored = 0;
+        for (UserInsertError error : errors) {
+            if (error.duplicateKey() && error.message().contains(ID_DUP_KEY)) {
+                alreadyStored++;
+                continue;
+            }
+            final User user = batch.get(error.index()).user();
+            detected.add(UserConflict.builder()
+                    .id(user.getId())
+                    .name(user.getName())
+                    .email(user.getEmail())
+                    .reason(error.duplicateKey() && DuplicateKeyMessages.isEmail(error.message())
+                            ? DuplicateKeyMessages.describe(error.message())
+                            : error.message())
+                    .detectedAt(LocalDateTime.now())
+                    .build());
+        }
+
+        created.increment(batch.size() - alreadyStored - detected.size());
+        replayed.increment(alreadyStored);
+        conflicts.increment(detected.size());
+        return detected.isEmpty() ? Mono.empty() : repository.saveConflicts(detected);
+    }
+
+    private void checkpoint(final long sequence) {
+        try {
+            journal.checkpoint(sequence);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void requeue(final List<Entry> batch) {
+        for (int i = batch.size() - 1; i >= 0; i--) {
+            queue.offerFirst(batch.get(i));
+        }
+        pending.addAndGet(batch.size());
+    }
+
+    private static Counter accepted(final MeterRegistry meterRegistry, final String mode) {
+        return Counter.builder("users.write-behind.accepted")
+                .description("Sign-ups acknowledged by POST /users while write-behind is enabled")
+                .tag("mode", mode)
+                .register(meterRegistry);
+    }
+
+    private static Counter flushed(final MeterRegistry meterRegistry, final String outcome) {
+        return Counter.builder("users.write-behind.flushed")
+                .description("Journaled sign-ups flushed to the store, by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private record Entry(long sequence, User user) {
+    }
+
+    private record Payload(String id, String name, String email, String password, Instant createdAt) {
+
+        static Payload of(final User user) {
+            return new Payload(user.getId(), user.getName(), user.getEmail(), user.getPassword(), user.getCreatedAt());
+        }
+
+        User toUser() {
+            return User.builder()
+                    .id(id)
+                    .name(name)
+                    .email(email)
+                    .password(password)
+                    .version(0L)
+                    .createdAt(createdAt)
+                    .build();
+        }
+    }
+}
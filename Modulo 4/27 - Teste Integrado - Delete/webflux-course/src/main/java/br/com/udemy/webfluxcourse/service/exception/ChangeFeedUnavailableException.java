@@ -0,0 +1,7 @@
+package br.com.udemy.webfluxcourse.service.exception;
+
+public class ChangeFeedUnavailableException extends RuntimeException{
+    public ChangeFeedUnavailableException(String message){
+        super(message);
+    }
+}
@@ -0,0 +1,20 @@
+package br.com.udemy.webfluxcourse.service.exception;
+
+public final class DuplicateKeyMessages {
+
+    private static final String EMAIL_DUP_KEY = "email dup key";
+
+    private DuplicateKeyMessages() {
+    }
+
+    public static boolean isEmail(final String message) {
+        return message != null && message.contains(EMAIL_DUP_KEY);
+    }
+
+    public static String describe(final String message) {
+        if (isEmail(message)) {
+            return "E-mail already registered";
+        }
+        return "Dup key exception";
+    }
+}
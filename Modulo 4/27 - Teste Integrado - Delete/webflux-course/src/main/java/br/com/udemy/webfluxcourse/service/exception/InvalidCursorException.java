@@ -0,0 +1,7 @@
+package br.com.udemy.webfluxcourse.service.exception;
+
+public class InvalidCursorException extends RuntimeException{
+    public InvalidCursorException(String message){
+        super(message);
+    }
+}
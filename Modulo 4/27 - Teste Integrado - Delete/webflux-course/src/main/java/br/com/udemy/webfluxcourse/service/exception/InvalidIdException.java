@@ -0,0 +1,7 @@
+package br.com.udemy.webfluxcourse.service.exception;
+
+public class InvalidIdException extends RuntimeException{
+    public InvalidIdException(String message){
+        super(message);
+    }
+}
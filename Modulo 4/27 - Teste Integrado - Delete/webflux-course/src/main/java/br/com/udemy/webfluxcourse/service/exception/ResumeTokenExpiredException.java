@@ -0,0 +1,7 @@
+package br.com.udemy.webfluxcourse.service.exception;
+
+public class ResumeTokenExpiredException extends RuntimeException{
+    public ResumeTokenExpiredException(String message){
+        super(message);
+    }
+}
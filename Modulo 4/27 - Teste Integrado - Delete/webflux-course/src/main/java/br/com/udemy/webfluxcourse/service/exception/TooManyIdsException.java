@@ -0,0 +1,7 @@
+package br.com.udemy.webfluxcourse.service.exception;
+
+public class TooManyIdsException extends RuntimeException{
+    public TooManyIdsException(String message){
+        super(message);
+    }
+}
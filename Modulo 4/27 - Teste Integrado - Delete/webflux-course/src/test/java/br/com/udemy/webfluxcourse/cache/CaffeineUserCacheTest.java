@@ -0,0 +1,86 @@
+package br.com.udemy.webfluxcourse.cache;
+
+import br.com.udemy.webfluxcourse.config.CacheProperties;
+import br.com.udemy.webfluxcourse.entity.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.contextpropagation.ObservationThreadLocalAccessor;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+class CaffeineUserCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final CaffeineUserCache cache = new CaffeineUserCache(
+            new CacheProperties(100, Duration.ofMinutes(1)), meterRegistry
+    );
+
+    @Test
+    void testGetCoalescesConcurrentMisses() {
+        AtomicInteger loads = new AtomicInteger();
+        Mono<User> slowLoad = Mono.delay(Duration.ofMillis(100))
+                .map(tick -> User.builder().id("123").build());
+
+        StepVerifier.create(Flux.range(0, 50)
+                        .flatMap(i -> cache.get("123", id -> {
+                            loads.incrementAndGet();
+                            return slowLoad;
+                        })))
+                .expectNextCount(50)
+                .expectComplete()
+                .verify();
+
+        Assertions.assertEquals(1, loads.get());
+    }
+
+    @Test
+    void testGetLoadsWithCallerObservation() {
+        ObservationRegistry observationRegistry = ObservationRegistry.create();
+        observationRegistry.observationConfig().observationHandler(context -> true);
+        Observation request = Observation.start("http.server.requests", observationRegistry);
+        AtomicReference<Object> parent = new AtomicReference<>();
+
+        cache.get("123", id -> Mono.deferContextual(context -> {
+                    parent.set(context.getOrDefault(ObservationThreadLocalAccessor.KEY, null));
+                    return Mono.just(User.builder().id(id).build());
+                }))
+                .contextWrite(context -> context.put(ObservationThreadLocalAccessor.KEY, request))
+                .block();
+
+        Assertions.assertSame(request, parent.get());
+    }
+
+    @Test
+    void testGetDoesNotCacheEmptyResult() {
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get("123", id -> Mono.fromRunnable(loads::incrementAndGet)).block();
+        cache.get("123", id -> Mono.fromRunnable(loads::incrementAndGet)).block();
+
+        Assertions.assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testEvictForcesReload() {
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get("123", id -> Mono.fromSupplier(() -> User.builder().id(String.valueOf(loads.incrementAndGet())).build())).block();
+        cache.get("123", id -> Mono.fromSupplier(() -> User.builder().id(String.valueOf(loads.incrementAndGet())).build())).block();
+        cache.evict("123").block();
+        User reloaded = cache.get("123", id -> Mono.fromSupplier(() -> User.builder().id(String.valueOf(loads.incrementAndGet())).build())).block();
+
+        Assertions.assertEquals(2, loads.get());
+        Assertions.assertNotNull(reloaded);
+        Assertions.assertEquals("2", reloaded.getId());
+        Assertions.assertEquals(1.0, meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count());
+    }
+}
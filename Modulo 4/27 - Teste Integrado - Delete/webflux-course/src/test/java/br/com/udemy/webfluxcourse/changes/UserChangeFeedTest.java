@@ -0,0 +1,202 @@
+package br.com.udemy.webfluxcourse.changes;
+
+import br.com.udemy.webfluxcourse.config.ChangeStreamProperties;
+import br.com.udemy.webfluxcourse.model.UserChange;
+import br.com.udemy.webfluxcourse.repository.UserStore;
+import br.com.udemy.webfluxcourse.service.exception.ResumeTokenExpiredException;
+import com.mongodb.MongoCommandException;
+import com.mongodb.ServerAddress;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.UncategorizedMongoDbException;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class UserChangeFeedTest {
+
+    @TempDir
+    Path directory;
+
+    @Mock
+    private UserStore repository;
+
+    private final RecordingListener listener = new RecordingListener();
+
+    private UserChangeFeed feed;
+
+    @AfterEach
+    void tearDown() {
+        feed.stop();
+    }
+
+    @Test
+    void testChangesReachListenersAndTheResumeTokenIsPersisted() throws IOException {
+        when(repository.watch(isNull())).thenReturn(Flux.just(
+                new UserChange(UserChange.Type.UPDATE, "1", null, "{\"_data\": \"01\"}"),
+                new UserChange(UserChange.Type.DELETE, "2", null, "{\"_data\": \"02\"}")
+        ).concatWith(Flux.never()));
+
+        feed = feed();
+
+        verify(repository, timeout(1000)).watch(isNull());
+        awaitEvents(2);
+        Assertions.assertEquals(List.of("UPDATE:1", "DELETE:2"), listener.events);
+        feed.stop();
+        Assertions.assertEquals("{\"_data\": \"02\"}", Files.readString(tokenFile()));
+    }
+
+    @Test
+    void testLostHistoryDropsTheTokenAndResetsListeners() throws IOException {
+        Files.writeString(tokenFile(), "{\"_data\": \"expired\"}");
+        when(repository.watch("{\"_data\": \"expired\"}")).thenReturn(Flux.error(new UncategorizedMongoDbException(
+                "history lost", new MongoCommandException(new BsonDocument("ok", new BsonInt32(0))
+                        .append("code", new BsonInt32(286))
+                        .append("errmsg", new BsonString("history lost")), new ServerAddress())
+        )));
+        when(repository.watch(isNull())).thenReturn(Flux.just(
+                new UserChange(UserChange.Type.UPDATE, "1", null, "{\"_data\": \"03\"}")
+        ).concatWith(Flux.never()));
+
+        feed = feed();
+
+        verify(repository, timeout(1000)).watch(isNull());
+        awaitEvents(2);
+        Assertions.assertEquals(List.of("RESET", "UPDATE:1"), listener.events);
+    }
+
+    @Test
+    void testExpiredStoreTokenDropsTheTokenAndResetsListeners() throws IOException {
+        Files.writeString(tokenFile(), "42");
+        when(repository.watch("42")).thenReturn(Flux.error(new ResumeTokenExpiredException("expired")));
+        when(repository.watch(isNull())).thenReturn(Flux.just(
+                new UserChange(UserChange.Type.UPDATE, "1", null, "43")
+        ).concatWith(Flux.never()));
+
+        feed = feed();
+
+        verify(repository, timeout(1000)).watch(isNull());
+        awaitEvents(2);
+        Assertions.assertEquals(List.of("RESET", "UPDATE:1"), listener.events);
+    }
+
+    @Test
+    void testReconnectBackoffResetsOnceChangesFlowAgain() {
+        final AtomicInteger sequence = new AtomicInteger();
+        when(repository.watch(any())).thenAnswer(invocation -> Flux.just(change("1", "t" + sequence.incrementAndGet()))
+                .concatWith(Flux.error(new IllegalStateException("connection reset"))));
+
+        feed = new UserChangeFeed(repository, List.of(listener), new ChangeStreamProperties(
+                true, tokenFile().toString(), Duration.ofSeconds(1), Duration.ofMillis(10), Duration.ofMinutes(1),
+                100, 16, ChangeStreamProperties.Overflow.DISCONNECT, Duration.ofSeconds(15)
+        ), new SimpleMeterRegistry());
+        feed.start();
+
+        awaitEvents(20);
+        Assertions.assertTrue(listener.events.size() >= 20);
+    }
+
+    @Test
+    void testSubscribersResumeFromATokenStillInHistory() {
+        final Sinks.Many<UserChange> changes = Sinks.many().unicast().onBackpressureBuffer();
+        when(repository.watch(isNull())).thenReturn(changes.asFlux());
+        feed = feed(ChangeStreamProperties.Overflow.DISCONNECT, 16);
+        changes.tryEmitNext(change("1", "t1"));
+        changes.tryEmitNext(change("2", "t2"));
+        awaitEvents(2);
+
+        StepVerifier.create(feed.subscribe("t1").map(UserChange::id))
+                .expectNext("2")
+                .then(() -> changes.tryEmitNext(change("3", "t3")))
+                .expectNext("3")
+                .thenCancel()
+                .verify(Duration.ofSeconds(1));
+
+        StepVerifier.create(feed.subscribe("unknown"))
+                .expectError(ResumeTokenExpiredException.class)
+                .verify(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void testSlowSubscribersAreDisconnectedWhenTheirBufferOverflows() {
+        final Sinks.Many<UserChange> changes = Sinks.many().unicast().onBackpressureBuffer();
+        when(repository.watch(isNull())).thenReturn(changes.asFlux());
+        feed = feed(ChangeStreamProperties.Overflow.DISCONNECT, 2);
+        verify(repository, timeout(1000)).watch(isNull());
+
+        StepVerifier.create(feed.subscribe(null), 0)
+                .then(() -> List.of("1", "2", "3").forEach(id -> changes.tryEmitNext(change(id, "t" + id))))
+                .thenRequest(3)
+                .expectNextCount(2)
+                .expectErrorMatches(Exceptions::isOverflow)
+                .verify(Duration.ofSeconds(1));
+    }
+
+    private UserChangeFeed feed() {
+        return feed(ChangeStreamProperties.Overflow.DISCONNECT, 16);
+    }
+
+    private UserChangeFeed feed(final ChangeStreamProperties.Overflow overflow, final int buffer) {
+        final var feed = new UserChangeFeed(repository, List.of(listener), new ChangeStreamProperties(
+                true, tokenFile().toString(), Duration.ofMillis(10), Duration.ofMillis(10), Duration.ofMillis(50),
+                100, buffer, overflow, Duration.ofSeconds(15)
+        ), new SimpleMeterRegistry());
+        feed.start();
+        return feed;
+    }
+
+    private static UserChange change(final String id, final String token) {
+        return new UserChange(UserChange.Type.UPDATE, id, null, token);
+    }
+
+    private Path tokenFile() {
+        return directory.resolve("resume-token");
+    }
+
+    private void awaitEvents(final int count) {
+        Mono.fromCallable(() -> listener.events.size() >= count ? true : null)
+                .repeatWhenEmpty(attempts -> attempts.delayElements(Duration.ofMillis(10)).take(100))
+                .block();
+    }
+
+    private static class RecordingListener implements UserChangeListener {
+
+        private final List<String> events = new CopyOnWriteArrayList<>();
+
+        @Override
+        public Mono<Void> onChange(final UserChange change) {
+            return Mono.fromRunnable(() -> events.add(change.type() + ":" + change.id()));
+        }
+
+        @Override
+        public Mono<Void> onReset() {
+            return Mono.fromRunnable(() -> events.add("RESET"));
+        }
+    }
+}
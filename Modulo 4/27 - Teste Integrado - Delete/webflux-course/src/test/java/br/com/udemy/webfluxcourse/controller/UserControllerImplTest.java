@@ -2,35 +2,65 @@ package br.com.udemy.webfluxcourse.controller;
 
 import br.com.udemy.webfluxcourse.entity.User;
 import br.com.udemy.webfluxcourse.mapper.UserMapper;
+import br.com.udemy.webfluxcourse.model.UserBatchResult;
+import br.com.udemy.webfluxcourse.model.UserChange;
+import br.com.udemy.webfluxcourse.model.UserLookup;
+import br.com.udemy.webfluxcourse.model.UserPage;
 import br.com.udemy.webfluxcourse.model.request.UserRequest;
+import br.com.udemy.webfluxcourse.model.response.UserBatchResponse;
+import br.com.udemy.webfluxcourse.model.response.UserChangeResponse;
+import br.com.udemy.webfluxcourse.model.response.UserLookupResponse;
+import br.com.udemy.webfluxcourse.model.response.UserPageResponse;
 import br.com.udemy.webfluxcourse.model.response.UserResponse;
 import br.com.udemy.webfluxcourse.service.UserService;
+import br.com.udemy.webfluxcourse.service.exception.PreconditionFailedException;
+import br.com.udemy.webfluxcourse.service.exception.ResumeTokenExpiredException;
 import com.mongodb.reactivestreams.client.MongoClient;
+import org.hamcrest.Matchers;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.GATEWAY_TIMEOUT;
+import static org.springframework.http.HttpStatus.GONE;
+import static org.springframework.http.HttpStatus.PRECONDITION_FAILED;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
+import static org.springframework.http.MediaType.TEXT_EVENT_STREAM;
 import static org.springframework.web.reactive.function.BodyInserters.fromValue;
 import static reactor.core.publisher.Mono.just;
 
 @ExtendWith(SpringExtension.class)
-@SpringBootTest
+@SpringBootTest(properties = "users.changes.heartbeat-interval=200ms")
 @AutoConfigureWebTestClient
+@AutoConfigureObservability(metrics = false)
 class UserControllerImplTest {
 
     @Autowired
@@ -119,49 +149,235 @@ class UserControllerImplTest {
                 .jsonPath("$.errors[0].message").isEqualTo("invalid email");
     }
 
+    @Test
+    @DisplayName("Test endpoint save all with NDJSON body")
+    void testSaveAllWithSuccess() {
+        final var response = new UserBatchResponse(0, "123456", "CREATED", null);
+        when(service.saveAll(any())).thenAnswer(invocation -> invocation.<Flux<UserRequest>>getArgument(0)
+                .map(request -> new UserBatchResult(0, User.builder().build(), UserBatchResult.Status.CREATED, null)));
+        when(mapper.toResponse(any(UserBatchResult.class))).thenReturn(response);
+
+        webTestClient.post().uri("/users/batch")
+                .contentType(APPLICATION_NDJSON)
+                .bodyValue("{\"name\":\"Rafael\",\"email\":\"rafael@email.com\",\"password\":\"123\"}\n"
+                        + "{\"name\":\"Maria\",\"email\":\"maria@email.com\",\"password\":\"123\"}\n")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[0].id").isEqualTo(response.id())
+                .jsonPath("$[0].status").isEqualTo(response.status());
+
+        verify(service, times(1)).saveAll(any());
+        verify(mapper, times(2)).toResponse(any(UserBatchResult.class));
+    }
+
     @Test
     @DisplayName("Test find by id endpoint with success")
     void testFindByIdWithSuccess() {
         final var id = "123456";
-        final var userResponse = new UserResponse(id, "Rafael", "rafael@mail.com", "123");
-        when(service.findById(anyString())).thenReturn(Mono.just(User.builder().build()));
+        final var userResponse = new UserResponse(id, "Rafael", "rafael@mail.com", null, null);
+        when(service.findById(anyString())).thenReturn(Mono.just(User.builder().version(3L).build()));
         when(mapper.toResponse(any(User.class))).thenReturn(userResponse);
 
         webTestClient.get().uri("/users/" + id)
                 .accept(APPLICATION_JSON)
                 .exchange()
                 .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "W/\"3\"")
                 .expectBody()
                 .jsonPath("$.id").isEqualTo(id)
                 .jsonPath("$.name").isEqualTo(userResponse.name())
                 .jsonPath("$.email").isEqualTo(userResponse.email())
-                .jsonPath("$.password").isEqualTo(userResponse.password());
+                .jsonPath("$.password").doesNotExist();
 
         verify(service, times(1)).findById(anyString());
         verify(mapper, times(1)).toResponse(any(User.class));
 
     }
 
+    @Test
+    @DisplayName("Test find by id endpoint with not modified when etag matches")
+    void testFindByIdWithNotModified() {
+        final var id = "123456";
+        when(service.findById(anyString())).thenReturn(Mono.just(User.builder().version(3L).build()));
+        when(mapper.toResponse(any(User.class))).thenReturn(new UserResponse(id, "Rafael", "rafael@mail.com", null, null));
+
+        webTestClient.get().uri("/users/" + id)
+                .accept(APPLICATION_JSON)
+                .header(HttpHeaders.IF_NONE_MATCH, "W/\"3\"")
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "W/\"3\"")
+                .expectBody().isEmpty();
+
+        verify(service, times(1)).findById(anyString());
+    }
+
+    @Test
+    @DisplayName("Test find by id endpoint with gateway timeout when mongo call times out")
+    void testFindByIdWithGatewayTimeout() {
+        final var id = "123456";
+        when(service.findById(anyString()))
+                .thenReturn(Mono.error(new TimeoutException("Mongo read call timed out after 2000 ms")));
+
+        webTestClient.get().uri("/users/" + id)
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(GATEWAY_TIMEOUT)
+                .expectBody()
+                .jsonPath("$.status").isEqualTo(GATEWAY_TIMEOUT.value())
+                .jsonPath("$.message").isEqualTo("Mongo read call timed out after 2000 ms")
+                .jsonPath("$.traceId").value(Matchers.matchesPattern("[0-9a-f]{32}"));
+    }
+
     @Test
     @DisplayName("Test find all endpoint with success")
     void testFindAllWithSuccess() {
         final var id = "123456";
-        final var userResponse = new UserResponse(id, "Rafael", "rafael@mail.com", "123");
-        when(service.findAll()).thenReturn(Flux.just(User.builder().build()));
-        when(mapper.toResponse(any(User.class))).thenReturn(userResponse);
+        final var userResponse = new UserResponse(id, "Rafael", "rafael@mail.com", null, null);
+        final var pageResponse = new UserPageResponse(List.of(userResponse), "next");
+        when(service.findAll(isNull(), any())).thenReturn(just(new UserPage(List.of(User.builder().build()), "next")));
+        when(mapper.toResponse(any(UserPage.class))).thenReturn(pageResponse);
 
-        webTestClient.get().uri("/users")
+        webTestClient.get().uri("/users?limit=1")
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.content[0].id").isEqualTo(id)
+                .jsonPath("$.content[0].name").isEqualTo(userResponse.name())
+                .jsonPath("$.content[0].email").isEqualTo(userResponse.email())
+                .jsonPath("$.content[0].password").doesNotExist()
+                .jsonPath("$.nextCursor").isEqualTo("next");
+
+        verify(service, times(1)).findAll(isNull(), any());
+        verify(mapper, times(1)).toResponse(any(UserPage.class));
+    }
+
+    @Test
+    @DisplayName("Test find all by id endpoint reports missing ids")
+    void testFindAllByIdWithSuccess() {
+        final var userResponse = new UserResponse("1", "Rafael", "rafael@mail.com", null, null);
+        when(service.findAllById(List.of("1", "2"))).thenReturn(Flux.just(
+                new UserLookup("1", User.builder().build()),
+                new UserLookup("2", null)
+        ));
+        when(mapper.toResponse(any(UserLookup.class)))
+                .thenReturn(new UserLookupResponse("1", true, userResponse))
+                .thenReturn(new UserLookupResponse("2", false, null));
+
+        webTestClient.get().uri("/users?ids=1,2")
                 .accept(APPLICATION_JSON)
                 .exchange()
                 .expectStatus().isOk()
                 .expectBody()
-                .jsonPath("$[0].id").isEqualTo(id)
-                .jsonPath("$[0].name").isEqualTo(userResponse.name())
-                .jsonPath("$[0].email").isEqualTo(userResponse.email())
-                .jsonPath("$[0].password").isEqualTo(userResponse.password());
+                .jsonPath("$[0].id").isEqualTo("1")
+                .jsonPath("$[0].found").isEqualTo(true)
+                .jsonPath("$[0].user.name").isEqualTo(userResponse.name())
+                .jsonPath("$[1].id").isEqualTo("2")
+                .jsonPath("$[1].found").isEqualTo(false);
+
+        verify(service, times(1)).findAllById(List.of("1", "2"));
+        verify(service, never()).findAll(any(), any());
+    }
+
+    @Test
+    @DisplayName("Test stream endpoint with success")
+    void testStreamWithSuccess() {
+        final var userResponse = new UserResponse("123456", "Rafael", "rafael@mail.com", null, null);
+        when(service.findAll()).thenReturn(Flux.just(User.builder().build(), User.builder().build()));
+        when(mapper.toResponse(any(User.class))).thenReturn(userResponse);
+
+        webTestClient.get().uri("/users")
+                .accept(APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(APPLICATION_NDJSON)
+                .expectBodyList(UserResponse.class)
+                .hasSize(2)
+                .contains(userResponse);
 
         verify(service, times(1)).findAll();
-        verify(mapper, times(1)).toResponse(any(User.class));
+        verify(mapper, times(2)).toResponse(any(User.class));
+    }
+
+    @Test
+    @DisplayName("Test change events endpoint resumes from Last-Event-ID")
+    void testChangeEventsResumeFromLastEventId() {
+        final var change = new UserChange(UserChange.Type.UPDATE, "123456", User.builder().build(), "t2");
+        final var changeResponse = new UserChangeResponse("UPDATE", "123456", null, "t2");
+        when(service.watchChanges("t1")).thenReturn(Flux.just(change).concatWith(Flux.never()));
+        when(mapper.toResponse(any(UserChange.class))).thenReturn(changeResponse);
+
+        final var events = webTestClient.get().uri("/users/changes")
+                .accept(TEXT_EVENT_STREAM)
+                .header("Last-Event-ID", "t1")
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(new ParameterizedTypeReference<ServerSentEvent<UserChangeResponse>>() {})
+                .getResponseBody();
+
+        StepVerifier.create(events)
+                .expectNextMatches(event -> "t2".equals(event.id())
+                        && "update".equals(event.event())
+                        && changeResponse.equals(event.data()))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    @DisplayName("Test changes endpoint streams NDJSON with heartbeat lines")
+    void testChangesStreamsNdjsonWithHeartbeats() {
+        final var change = new UserChange(UserChange.Type.DELETE, "123456", null, "t2");
+        final var changeResponse = new UserChangeResponse("DELETE", "123456", null, "t2");
+        when(service.watchChanges("t1")).thenReturn(Flux.just(change).concatWith(Flux.never()));
+        when(mapper.toResponse(any(UserChange.class))).thenReturn(changeResponse);
+
+        final var lines = webTestClient.get().uri("/users/changes?resumeToken=t1")
+                .accept(APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(APPLICATION_NDJSON)
+                .returnResult(UserChangeResponse.class)
+                .getResponseBody();
+
+        StepVerifier.create(lines)
+                .expectNext(changeResponse)
+                .expectNextMatches(heartbeat -> "HEARTBEAT".equals(heartbeat.type()) && heartbeat.id() == null)
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    @DisplayName("Test changes endpoint with gone when the resume token expired")
+    void testChangesWithGoneWhenResumeTokenExpired() {
+        when(service.watchChanges("old")).thenReturn(Flux.error(new ResumeTokenExpiredException("expired")));
+
+        webTestClient.get().uri("/users/changes?resumeToken=old")
+                .accept(APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isEqualTo(GONE);
+    }
+
+    @Test
+    @DisplayName("Test modified since endpoint streams changed users")
+    void testFindModifiedSinceWithSuccess() {
+        final var since = Instant.parse("2024-03-13T12:00:00Z");
+        final var userResponse = new UserResponse("1", "Rafael", "rafael@mail.com", since, since.plusSeconds(5));
+        when(service.findModifiedSince(since)).thenReturn(Flux.just(User.builder().build()));
+        when(mapper.toResponse(any(User.class))).thenReturn(userResponse);
+
+        webTestClient.get().uri("/users?modifiedSince=2024-03-13T12:00:00Z")
+                .accept(APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(UserResponse.class)
+                .hasSize(1)
+                .contains(userResponse);
+
+        verify(service, times(1)).findModifiedSince(since);
+        verify(service, never()).findAll();
     }
 
     @Test
@@ -169,9 +385,9 @@ class UserControllerImplTest {
     void testUpdateWithSuccess() {
         final var id = "123456";
         UserRequest request = new UserRequest("Rafael", "rafael@email.com", "123");
-        final var userResponse = new UserResponse(id, "Rafael", "rafael@mail.com", "123");
+        final var userResponse = new UserResponse(id, "Rafael", "rafael@mail.com", null, null);
 
-        when(service.update(anyString(), any(UserRequest.class))).thenReturn(just(User.builder().build()));
+        when(service.update(anyString(), isNull(), any(UserRequest.class))).thenReturn(just(User.builder().build()));
         when(mapper.toResponse(any(User.class))).thenReturn(userResponse);
 
 
@@ -184,12 +400,35 @@ class UserControllerImplTest {
                 .jsonPath("$.id").isEqualTo(userResponse.id())
                 .jsonPath("$.name").isEqualTo(userResponse.name())
                 .jsonPath("$.email").isEqualTo(userResponse.email())
-                .jsonPath("$.password").isEqualTo(userResponse.password());
+                .jsonPath("$.password").doesNotExist();
 
-        verify(service, times(1)).update(anyString(), any(UserRequest.class));
+        verify(service, times(1)).update(anyString(), isNull(), any(UserRequest.class));
         verify(mapper, times(1)).toResponse(any(User.class));
     }
 
+    @Test
+    @DisplayName("Test update endpoint with precondition failed when version does not match")
+    void testUpdateWithPreconditionFailed() {
+        final var id = "123456";
+        UserRequest request = new UserRequest("Rafael", "rafael@email.com", "123");
+
+        when(service.update(anyString(), eq(3L), any(UserRequest.class)))
+                .thenReturn(Mono.error(new PreconditionFailedException("Precondition failed. Id: 123456, Version: 3")));
+
+        webTestClient.patch().uri("/users/" + id)
+                .contentType(APPLICATION_JSON)
+                .header(HttpHeaders.IF_MATCH, "W/\"3\"")
+                .body(fromValue(request))
+                .exchange()
+                .expectStatus().isEqualTo(PRECONDITION_FAILED)
+                .expectBody()
+                .jsonPath("$.status").isEqualTo(PRECONDITION_FAILED.value())
+                .jsonPath("$.path").isEqualTo("/users/" + id);
+
+        verify(service, times(1)).update(anyString(), eq(3L), any(UserRequest.class));
+        verify(mapper, never()).toResponse(any(User.class));
+    }
+
     @Test
     @DisplayName("Test delete endpoint with success")
     void testDeleteWithSuccess() {
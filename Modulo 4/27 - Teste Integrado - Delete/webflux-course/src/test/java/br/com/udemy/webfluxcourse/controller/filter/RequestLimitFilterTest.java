@@ -0,0 +1,203 @@
+package br.com.udemy.webfluxcourse.controller.filter;
+
+import br.com.udemy.webfluxcourse.config.LimitProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.tracing.Tracer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+class RequestLimitFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final RequestLimitFilter filter = new RequestLimitFilter(
+            new LimitProperties(
+                    true,
+                    new LimitProperties.Rate(1, 2, "X-Client-Id", 100, Duration.ofMinutes(1)),
+                    new LimitProperties.Concurrency(1, 1, 4, 0.5, Duration.ofSeconds(1))
+            ),
+            meterRegistry,
+            new ObjectMapper().findAndRegisterModules(),
+            Tracer.NOOP
+    );
+
+    private final WebFilterChain ok = exchange -> Mono.empty();
+
+    @Test
+    void testRateLimitShedsClientAboveBurst() {
+        Assertions.assertNull(status(filter(get("/users/1", "client-a"), ok)));
+        Assertions.assertNull(status(filter(get("/users/1", "client-a"), ok)));
+
+        final var rejected = get("/users/1", "client-a");
+        StepVerifier.create(filter.filter(rejected, ok)).verifyComplete();
+
+        Assertions.assertEquals(HttpStatus.TOO_MANY_REQUESTS, rejected.getResponse().getStatusCode());
+        Assertions.assertEquals("1", rejected.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        StepVerifier.create(rejected.getResponse().getBodyAsString())
+                .expectNextMatches(body -> body.contains("\"status\":429") && body.contains("\"path\":\"/users/1\""))
+                .verifyComplete();
+
+        Assertions.assertNull(status(filter(get("/users/1", "client-b"), ok)));
+        Assertions.assertEquals(1.0, meterRegistry.get("users.limiter.requests")
+                .tags("limiter", "rate", "outcome", "shed", "uri", "/users/{id}").counter().count());
+    }
+
+    @Test
+    void testClientIdHeaderIsIgnoredUnlessConfigured() {
+        final var byAddress = new RequestLimitFilter(
+                new LimitProperties(
+                        true,
+                        new LimitProperties.Rate(1, 2, null, 100, Duration.ofMinutes(1)),
+                        new LimitProperties.Concurrency(10, 1, 10, 0.5, Duration.ofSeconds(1))
+                ),
+                new SimpleMeterRegistry(),
+                new ObjectMapper().findAndRegisterModules(),
+                Tracer.NOOP
+        );
+        final var address = new InetSocketAddress("203.0.113.7", 40000);
+
+        final var statuses = new ArrayList<HttpStatus>();
+        for (int i = 0; i < 3; i++) {
+            final var spoofed = MockServerWebExchange.from(MockServerHttpRequest.get("/users/1")
+                    .remoteAddress(address)
+                    .header("X-Client-Id", "spoofed-" + i));
+            byAddress.filter(spoofed, ok).block();
+            statuses.add(status(spoofed));
+        }
+
+        Assertions.assertEquals(Arrays.asList(null, null, HttpStatus.TOO_MANY_REQUESTS), statuses);
+    }
+
+    @Test
+    void testConcurrencyLimitShedsWhileRouteIsSaturated() {
+        final Sinks.Empty<Void> release = Sinks.empty();
+        final var first = get("/users/1", "client-a");
+        final var pending = filter.filter(first, exchange -> release.asMono()).subscribe();
+
+        final var rejected = filter(get("/users/2", "client-b"), ok);
+        Assertions.assertEquals(HttpStatus.SERVICE_UNAVAILABLE, status(rejected));
+
+        release.tryEmitEmpty();
+        Assertions.assertTrue(pending.isDisposed());
+        Assertions.assertNull(status(filter(get("/users/2", "client-c"), ok)));
+        Assertions.assertEquals(3.0, limit());
+    }
+
+    @Test
+    void testConcurrencyLimitGrowsOnlyWhileUtilizedAndBacksOffOnServerErrors() {
+        filter(get("/users/1", "client-a"), ok);
+        filter(get("/users/1", "client-b"), ok);
+        filter(get("/users/1", "client-c"), ok);
+        Assertions.assertEquals(3.0, limit());
+
+        filter(get("/users/1", "client-d"), exchange -> {
+            exchange.getResponse().setStatusCode(HttpStatus.INTERNAL_SERVER_ERROR);
+            return Mono.empty();
+        });
+        Assertions.assertEquals(1.0, limit());
+    }
+
+    @Test
+    void testStreamingRequestsBypassConcurrencyLimit() {
+        final var first = filter.filter(get("/users/1", "client-a"), exchange -> Mono.never()).subscribe();
+
+        final var stream = MockServerWebExchange.from(MockServerHttpRequest.get("/users")
+                .header("X-Client-Id", "client-b")
+                .accept(MediaType.APPLICATION_NDJSON));
+        Assertions.assertNull(status(filter(stream, ok)));
+
+        first.dispose();
+    }
+
+    @Test
+    void testStreamingAcceptHeaderDoesNotBypassConcurrencyLimitOnOtherRoutes() {
+        final var first = filter.filter(
+                MockServerWebExchange.from(MockServerHttpRequest.post("/users").header("X-Client-Id", "client-a")),
+                exchange -> Mono.never()
+        ).subscribe();
+
+        final var write = MockServerWebExchange.from(MockServerHttpRequest.post("/users")
+                .header("X-Client-Id", "client-b")
+                .accept(MediaType.APPLICATION_NDJSON, MediaType.TEXT_EVENT_STREAM));
+        Assertions.assertEquals(HttpStatus.SERVICE_UNAVAILABLE, status(filter(write, ok)));
+
+        first.dispose();
+    }
+
+    @Test
+    void testUnknownMethodsShareOneLimiter() {
+        for (int i = 0; i < 3; i++) {
+            final var exchange = MockServerWebExchange.from(MockServerHttpRequest
+                    .method(HttpMethod.valueOf("METHOD" + i), "/users/1")
+                    .header("X-Client-Id", "client-" + i));
+            filter(exchange, ok);
+        }
+
+        Assertions.assertEquals(1, meterRegistry.find("users.limiter.concurrency.limit").gauges().size());
+        Assertions.assertEquals(3.0, meterRegistry.get("users.limiter.requests")
+                .tags("limiter", "concurrency", "outcome", "admitted", "method", "OTHER").counter().count());
+    }
+
+    @Test
+    void testExportDoesNotShareConcurrencyLimitWithPaging() {
+        final var export = filter.filter(
+                MockServerWebExchange.from(MockServerHttpRequest.get("/users?modifiedSince=2024-01-01T00:00:00Z")
+                        .header("X-Client-Id", "client-a")),
+                exchange -> Mono.never()
+        ).subscribe();
+
+        final var lookup = MockServerWebExchange.from(MockServerHttpRequest.get("/users?ids=1")
+                .header("X-Client-Id", "client-b"));
+        Assertions.assertNull(status(filter(lookup, ok)));
+        Assertions.assertNull(status(filter(get("/users", "client-c"), ok)));
+
+        final var secondExport = MockServerWebExchange.from(
+                MockServerHttpRequest.get("/users?modifiedSince=2024-01-01T00:00:00Z").header("X-Client-Id", "client-d"));
+        Assertions.assertEquals(HttpStatus.SERVICE_UNAVAILABLE, status(filter(secondExport, ok)));
+
+        export.dispose();
+    }
+
+    @Test
+    void testNonUserRoutesAreNotLimited() {
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertNull(status(filter(get("/actuator/health", "client-a"), ok)));
+        }
+    }
+
+    private MockServerWebExchange get(final String path, final String client) {
+        return MockServerWebExchange.from(MockServerHttpRequest.get(path).header("X-Client-Id", client));
+    }
+
+    private MockServerWebExchange filter(final MockServerWebExchange exchange, final WebFilterChain chain) {
+        filter.filter(exchange, chain).block();
+        return exchange;
+    }
+
+    private HttpStatus status(final MockServerWebExchange exchange) {
+        return exchange.getResponse().getStatusCode() != null
+                ? HttpStatus.valueOf(exchange.getResponse().getStatusCode().value())
+                : null;
+    }
+
+    private double limit() {
+        return meterRegistry.get("users.limiter.concurrency.limit")
+                .tags("method", "GET", "uri", "/users/{id}", "query", "none").gauge().value();
+    }
+}
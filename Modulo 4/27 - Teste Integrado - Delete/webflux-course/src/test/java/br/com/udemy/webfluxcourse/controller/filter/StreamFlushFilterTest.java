@@ -0,0 +1,158 @@
+package br.com.udemy.webfluxcourse.controller.filter;
+
+import br.com.udemy.webfluxcourse.config.StreamProperties;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+class StreamFlushFilterTest {
+
+    private final NettyDataBufferFactory bufferFactory = new NettyDataBufferFactory(UnpooledByteBufAllocator.DEFAULT);
+
+    @Test
+    void testFlushesAreCoalescedIntoBatches() {
+        final var filter = new StreamFlushFilter(new StreamProperties(256, 2, Duration.ofMinutes(1)));
+        final var response = new RecordingResponse(exchange().getResponse());
+
+        filter.filter(exchange(response), exchange -> ndjson(exchange).writeAndFlushWith(
+                Flux.just("a", "b", "c", "d", "e").map(value -> Mono.just(buffer(value)))
+        )).block(Duration.ofSeconds(5));
+
+        Assertions.assertEquals(List.of("ab", "cd", "e"), response.flushes);
+    }
+
+    @Test
+    void testEventStreamsAreFlushedPerEvent() {
+        final var filter = new StreamFlushFilter(new StreamProperties(256, 2, Duration.ofMinutes(1)));
+        final var response = new RecordingResponse(exchange().getResponse());
+
+        filter.filter(exchange(response), exchange -> {
+            exchange.getResponse().getHeaders().setContentType(MediaType.TEXT_EVENT_STREAM);
+            return exchange.getResponse().writeAndFlushWith(
+                    Flux.just("a", "b", "c").map(value -> Mono.just(buffer(value)))
+            );
+        }).block(Duration.ofSeconds(5));
+
+        Assertions.assertEquals(List.of("a", "b", "c"), response.flushes);
+    }
+
+    @Test
+    void testChangeStreamIsNotBatched() {
+        final var filter = new StreamFlushFilter(new StreamProperties(256, 2, Duration.ofMinutes(1)));
+        final var changes = MockServerWebExchange.from(MockServerHttpRequest.get("/users/changes"));
+        final AtomicReference<ServerWebExchange> seen = new AtomicReference<>();
+
+        filter.filter(changes, next -> {
+            seen.set(next);
+            return Mono.empty();
+        }).block(Duration.ofSeconds(5));
+
+        Assertions.assertSame(changes, seen.get());
+    }
+
+    @Test
+    void testBufferedDataIsReleasedOnCancel() {
+        final var filter = new StreamFlushFilter(new StreamProperties(256, 10, Duration.ofMinutes(1)));
+        final var response = new RecordingResponse(exchange().getResponse());
+        final NettyDataBuffer pending = buffer("pending");
+
+        final var write = filter.filter(exchange(response), exchange -> ndjson(exchange).writeAndFlushWith(
+                Flux.just(Mono.just(pending)).concatWith(Flux.never())
+        )).subscribe();
+        write.dispose();
+
+        Assertions.assertTrue(response.flushes.isEmpty());
+        Assertions.assertEquals(0, pending.getNativeBuffer().refCnt());
+    }
+
+    @Test
+    void testNonStreamingWritesPassThroughUntouched() {
+        final var filter = new StreamFlushFilter(new StreamProperties(256, 2, Duration.ofMinutes(1)));
+        final var response = new RecordingResponse(exchange().getResponse());
+        final Mono<DataBuffer> body = Mono.just(buffer("{\"id\":\"1\"}"));
+
+        filter.filter(exchange(response), exchange -> exchange.getResponse().writeWith(body))
+                .block(Duration.ofSeconds(5));
+
+        Assertions.assertSame(body, response.written.get());
+        Assertions.assertTrue(response.flushes.isEmpty());
+    }
+
+    @Test
+    void testFilterIsSkippedWhenFlushBatchingIsOff() {
+        final var filter = new StreamFlushFilter(new StreamProperties(256, 1, Duration.ofMinutes(1)));
+        final var exchange = exchange();
+        final AtomicReference<ServerWebExchange> seen = new AtomicReference<>();
+
+        filter.filter(exchange, next -> {
+            seen.set(next);
+            return Mono.empty();
+        }).block(Duration.ofSeconds(5));
+
+        Assertions.assertSame(exchange, seen.get());
+    }
+
+    private MockServerWebExchange exchange() {
+        return MockServerWebExchange.from(MockServerHttpRequest.get("/users"));
+    }
+
+    private ServerWebExchange exchange(final ServerHttpResponse response) {
+        return exchange().mutate().response(response).build();
+    }
+
+    private ServerHttpResponse ndjson(final ServerWebExchange exchange) {
+        exchange.getResponse().getHeaders().setContentType(MediaType.APPLICATION_NDJSON);
+        return exchange.getResponse();
+    }
+
+    private NettyDataBuffer buffer(final String value) {
+        return (NettyDataBuffer) bufferFactory.wrap(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static class RecordingResponse extends ServerHttpResponseDecorator {
+
+        private final List<String> flushes = new CopyOnWriteArrayList<>();
+        private final AtomicReference<Publisher<? extends DataBuffer>> written = new AtomicReference<>();
+
+        RecordingResponse(final ServerHttpResponse delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public Mono<Void> writeWith(final Publisher<? extends DataBuffer> body) {
+            written.set(body);
+            return super.writeWith(body);
+        }
+
+        @Override
+        public Mono<Void> writeAndFlushWith(final Publisher<? extends Publisher<? extends DataBuffer>> body) {
+            return Flux.from(body)
+                    .concatMap(flush -> DataBufferUtils.join(flush).map(buffer -> {
+                        final String content = buffer.toString(StandardCharsets.UTF_8);
+                        DataBufferUtils.release(buffer);
+                        return content;
+                    }))
+                    .doOnNext(flushes::add)
+                    .then();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package br.com.udemy.webfluxcourse.journal;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+class UserJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testReopenReplaysEntriesAfterCheckpoint() throws IOException {
+        try (UserJournal journal = UserJournal.open(directory, 1024, false)) {
+            journal.append(bytes("first"));
+            final long second = journal.append(bytes("second"));
+            journal.append(bytes("third"));
+            journal.checkpoint(second);
+        }
+
+        try (UserJournal journal = UserJournal.open(directory, 1024, false)) {
+            Assertions.assertEquals(List.of("third"), payloads(journal.recovered()));
+            Assertions.assertEquals(4L, journal.append(bytes("fourth")));
+        }
+    }
+
+    @Test
+    void testTornTailIsIgnoredAndOverwritten() throws IOException {
+        try (UserJournal journal = UserJournal.open(directory, 1024, false)) {
+            journal.append(bytes("complete"));
+            journal.append(bytes("torn"));
+        }
+        try (RandomAccessFile file = new RandomAccessFile(segments().get(0).toFile(), "rw")) {
+            final int tornCrc = 2 * (Integer.BYTES + Long.BYTES + Integer.BYTES) + "complete".length() + "torn".length() - 1;
+            file.seek(tornCrc);
+            final int last = file.read();
+            file.seek(tornCrc);
+            file.write(last ^ 0xFF);
+        }
+
+        try (UserJournal journal = UserJournal.open(directory, 1024, false)) {
+            Assertions.assertEquals(List.of("complete"), payloads(journal.recovered()));
+            journal.append(bytes("rewritten"));
+        }
+        try (UserJournal journal = UserJournal.open(directory, 1024, false)) {
+            Assertions.assertEquals(List.of("complete", "rewritten"), payloads(journal.recovered()));
+        }
+    }
+
+    @Test
+    void testCheckpointDeletesFlushedSegments() throws IOException {
+        try (UserJournal journal = UserJournal.open(directory, 64, false)) {
+            long last = 0;
+            for (int i = 0; i < 10; i++) {
+                last = journal.append(bytes("entry-" + i + "-padding-padding"));
+            }
+            Assertions.assertEquals(10, segments().size());
+
+            journal.checkpoint(last);
+
+            Assertions.assertEquals(1, segments().size());
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(".journal")).sorted().toList();
+        }
+    }
+
+    private static byte[] bytes(final String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> payloads(final List<UserJournal.Record> records) {
+        return records.stream().map(record -> new String(record.payload(), StandardCharsets.UTF_8)).toList();
+    }
+}
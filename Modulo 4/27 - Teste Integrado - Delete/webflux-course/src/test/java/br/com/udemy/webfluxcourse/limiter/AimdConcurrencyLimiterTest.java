@@ -0,0 +1,64 @@
+package br.com.udemy.webfluxcourse.limiter;
+
+import br.com.udemy.webfluxcourse.config.LimitProperties;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+class AimdConcurrencyLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private final AimdConcurrencyLimiter limiter = new AimdConcurrencyLimiter(
+            new LimitProperties.Concurrency(40, 5, 100, 0.5, Duration.ofMillis(100)),
+            clock::get
+    );
+
+    @Test
+    void testConcurrentSlowCompletionsBackOffOnce() {
+        final List<Long> starts = admit(20);
+        clock.addAndGet(Duration.ofSeconds(1).toNanos());
+
+        starts.forEach(limiter::onSuccess);
+
+        Assertions.assertEquals(20, limiter.limit());
+        Assertions.assertEquals(0, limiter.inFlight());
+    }
+
+    @Test
+    void testConcurrentDropsBackOffOnce() {
+        final List<Long> starts = admit(10);
+        clock.addAndGet(Duration.ofMillis(1).toNanos());
+
+        starts.forEach(limiter::onDropped);
+
+        Assertions.assertEquals(20, limiter.limit());
+    }
+
+    @Test
+    void testRequestsAdmittedAfterBackOffCanBackOffAgain() {
+        final List<Long> before = admit(5);
+        clock.addAndGet(Duration.ofSeconds(1).toNanos());
+        limiter.onSuccess(before.get(0));
+
+        final List<Long> after = admit(1);
+        clock.addAndGet(Duration.ofSeconds(1).toNanos());
+        before.subList(1, before.size()).forEach(limiter::onSuccess);
+        after.forEach(limiter::onSuccess);
+
+        Assertions.assertEquals(10, limiter.limit());
+    }
+
+    private List<Long> admit(final int requests) {
+        final List<Long> starts = new ArrayList<>();
+        for (int i = 0; i < requests; i++) {
+            Assertions.assertTrue(limiter.tryAcquire());
+            starts.add(limiter.start());
+        }
+        return starts;
+    }
+}
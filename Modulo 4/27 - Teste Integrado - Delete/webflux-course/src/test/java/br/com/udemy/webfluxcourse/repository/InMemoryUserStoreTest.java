@@ -0,0 +1,240 @@
+package br.com.udemy.webfluxcourse.repository;
+
+import br.com.udemy.webfluxcourse.config.StoreProperties;
+import br.com.udemy.webfluxcourse.entity.User;
+import br.com.udemy.webfluxcourse.metrics.UserMetrics;
+import br.com.udemy.webfluxcourse.model.UserChange;
+import br.com.udemy.webfluxcourse.service.exception.ResumeTokenExpiredException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.stream.IntStream;
+
+class InMemoryUserStoreTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final InMemoryUserStore store = new InMemoryUserStore(
+            new StoreProperties("memory", 8, 1000, 256), new UserMetrics(meterRegistry)
+    );
+
+    @Test
+    void testConcurrentInsertsKeepEmailUnique() {
+        final var outcomes = Flux.range(0, 64)
+                .parallel(8)
+                .runOn(Schedulers.parallel())
+                .flatMap(i -> store.save(user("user" + i, "same@mail.com"))
+                        .map(user -> "created")
+                        .onErrorResume(DuplicateKeyException.class, ex -> Mono.just("duplicate")))
+                .sequential()
+                .collectList()
+                .block();
+
+        Assertions.assertEquals(1, outcomes.stream().filter("created"::equals).count());
+        Assertions.assertEquals(63, outcomes.stream().filter("duplicate"::equals).count());
+    }
+
+    @Test
+    void testSaveAssignsIdAndVersionAndHidesPassword() {
+        final User saved = store.save(user("rafael", "rafael@mail.com")).block();
+
+        Assertions.assertNotNull(saved.getId());
+        Assertions.assertEquals(0L, saved.getVersion());
+        Assertions.assertNull(saved.getPassword());
+
+        saved.setName("mutated");
+        Assertions.assertEquals("rafael", store.findById(saved.getId()).block().getName());
+    }
+
+    @Test
+    void testInsertAllReportsDuplicatesByIndex() {
+        StepVerifier.create(store.insertAll(List.of(
+                        user("a", "a@mail.com"), user("b", "a@mail.com"), user("c", "c@mail.com")
+                )))
+                .expectNextMatches(errors -> errors.size() == 1
+                        && errors.get(0).index() == 1
+                        && errors.get(0).duplicateKey()
+                        && errors.get(0).message().contains("email dup key"))
+                .expectComplete()
+                .verify();
+    }
+
+    @Test
+    void testFindAndModifyChecksVersionAndMovesEmail() {
+        final User saved = store.save(user("rafael", "old@mail.com")).block();
+
+        StepVerifier.create(store.findAndModify(saved.getId(), 7L, User.builder().name("stale").build()))
+                .expectComplete()
+                .verify();
+
+        StepVerifier.create(store.findAndModify(saved.getId(), 0L, User.builder().email("new@mail.com").build()))
+                .expectNextMatches(user -> user.getVersion() == 1L && user.getEmail().equals("new@mail.com"))
+                .expectComplete()
+                .verify();
+
+        StepVerifier.create(store.save(user("other", "old@mail.com")))
+                .expectNextCount(1)
+                .expectComplete()
+                .verify();
+        StepVerifier.create(store.save(user("another", "new@mail.com")))
+                .expectError(DuplicateKeyException.class)
+                .verify();
+    }
+
+    @Test
+    void testFindAllAfterPagesInIdOrderAndRemoveFreesEmail() {
+        final var ids = IntStream.range(0, 5)
+                .mapToObj(i -> store.save(user("user" + i, "user" + i + "@mail.com")).block().getId())
+                .sorted()
+                .toList();
+
+        StepVerifier.create(store.findAllAfter(ids.get(1), 2).map(User::getId))
+                .expectNext(ids.get(2), ids.get(3))
+                .expectComplete()
+                .verify();
+
+        final User removed = store.findAndRemove(ids.get(0)).block();
+        StepVerifier.create(store.findAllAfter(null, 10))
+                .expectNextCount(4)
+                .expectComplete()
+                .verify();
+        StepVerifier.create(store.save(user("again", removed.getEmail())))
+                .expectNextCount(1)
+                .expectComplete()
+                .verify();
+    }
+
+    @Test
+    void testModifiedSinceWalksUpdatedAtThenId() {
+        final Instant start = Instant.now();
+        final var ids = IntStream.range(0, 4)
+                .mapToObj(i -> store.save(user("user" + i, "modified" + i + "@mail.com")).block().getId())
+                .toList();
+        final User updated = store.findAndModify(ids.get(0), null, User.builder().name("renamed").build()).block();
+
+        final List<User> all = store.findModifiedSince(start, null, null, 10).collectList().block();
+        Assertions.assertEquals(4, all.size());
+        Assertions.assertEquals(updated.getId(), all.get(3).getId());
+        for (int i = 1; i < all.size(); i++) {
+            Assertions.assertFalse(all.get(i).getUpdatedAt().isBefore(all.get(i - 1).getUpdatedAt()));
+        }
+
+        final User cursor = all.get(1);
+        StepVerifier.create(store.findModifiedSince(start, cursor.getUpdatedAt(), cursor.getId(), 10).map(User::getId))
+                .expectNext(all.get(2).getId(), all.get(3).getId())
+                .expectComplete()
+                .verify();
+        StepVerifier.create(store.findModifiedSince(updated.getUpdatedAt().plusNanos(1), null, null, 10))
+                .expectComplete()
+                .verify();
+    }
+
+    @Test
+    void testEmptyResultsCountAsNotFoundOnlyForLookups() {
+        store.findById("missing").block();
+        store.saveConflicts(List.of()).block();
+
+        Assertions.assertEquals(1.0, meterRegistry.get("users.repository.outcomes")
+                .tags("operation", "findById", "outcome", UserMetrics.NOT_FOUND).counter().count());
+        Assertions.assertEquals(1.0, meterRegistry.get("users.repository.outcomes")
+                .tags("operation", "saveConflicts", "outcome", UserMetrics.SUCCESS).counter().count());
+    }
+
+    @Test
+    void testModifyWithinClockResolutionKeepsUserInModifiedSince() {
+        final Instant now = Instant.parse("2026-01-01T00:00:00Z");
+        final var frozen = new InMemoryUserStore(
+                new StoreProperties("memory", 8, 1000, 256), new UserMetrics(new SimpleMeterRegistry()), Clock.fixed(now, ZoneOffset.UTC)
+        );
+        final User saved = frozen.save(user("rafael", "frozen@mail.com")).block();
+        frozen.findAndModify(saved.getId(), null, User.builder().name("renamed").build()).block();
+
+        StepVerifier.create(frozen.findModifiedSince(now.minusSeconds(1), null, null, 10).map(User::getName))
+                .expectNext("renamed")
+                .expectComplete()
+                .verify();
+    }
+
+    @Test
+    void testWatchBuffersConcurrentChangesForSlowSubscriber() {
+        final var verifier = StepVerifier.create(store.watch(null).map(UserChange::id), 0)
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(10))
+                .thenRequest(Long.MAX_VALUE)
+                .expectNextCount(256)
+                .thenCancel()
+                .verifyLater();
+
+        Flux.range(0, 256)
+                .parallel(8)
+                .runOn(Schedulers.parallel())
+                .flatMap(i -> store.save(user("user" + i, "watched" + i + "@mail.com")))
+                .sequential()
+                .blockLast();
+
+        verifier.verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void testWatchResumesAfterTokenFromHistory() {
+        final var history = new InMemoryUserStore(
+                new StoreProperties("memory", 8, 2, 256), new UserMetrics(new SimpleMeterRegistry())
+        );
+        final List<String> tokens = IntStream.range(0, 3)
+                .mapToObj(i -> history.save(user("user" + i, "history" + i + "@mail.com")).block())
+                .map(User::getId)
+                .toList();
+
+        StepVerifier.create(history.watch("1").map(UserChange::id).take(2))
+                .expectNext(tokens.get(1), tokens.get(2))
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        StepVerifier.create(history.watch("3").map(UserChange::id))
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(20))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void testWatchRejectsTokensOutsideHistory() {
+        final var history = new InMemoryUserStore(
+                new StoreProperties("memory", 8, 2, 256), new UserMetrics(new SimpleMeterRegistry())
+        );
+        IntStream.range(0, 3).forEach(i -> history.save(user("user" + i, "expired" + i + "@mail.com")).block());
+
+        StepVerifier.create(history.watch("0")).expectError(ResumeTokenExpiredException.class).verify();
+        StepVerifier.create(history.watch("4")).expectError(ResumeTokenExpiredException.class).verify();
+        StepVerifier.create(history.watch("{\"_data\": \"mongo\"}")).expectError(ResumeTokenExpiredException.class).verify();
+    }
+
+    @Test
+    void testWatchFailsSubscriberThatFallsTooFarBehind() {
+        final var bounded = new InMemoryUserStore(
+                new StoreProperties("memory", 8, 1000, 4), new UserMetrics(new SimpleMeterRegistry())
+        );
+        final var verifier = StepVerifier.create(bounded.watch(null), 0)
+                .expectSubscription()
+                .expectError(IllegalStateException.class)
+                .verifyLater();
+
+        IntStream.range(0, 5).forEach(i -> bounded.save(user("user" + i, "slow" + i + "@mail.com")).block());
+
+        verifier.verify(Duration.ofSeconds(5));
+    }
+
+    private User user(final String name, final String email) {
+        return User.builder().name(name).email(email).password("123456").build();
+    }
+}
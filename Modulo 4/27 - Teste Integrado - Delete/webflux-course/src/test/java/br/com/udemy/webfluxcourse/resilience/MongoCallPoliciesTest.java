@@ -0,0 +1,82 @@
+package br.com.udemy.webfluxcourse.resilience;
+
+import br.com.udemy.webfluxcourse.config.ResilienceProperties;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+
+class MongoCallPoliciesTest {
+
+    private final ResilienceProperties.Policy policy = new ResilienceProperties.Policy(
+            Duration.ofMillis(100), 1, 50, 4, 4, Duration.ofMinutes(1)
+    );
+
+    private final MongoCallPolicies policies = new MongoCallPolicies(
+            new ResilienceProperties(true, policy, policy, policy), new SimpleMeterRegistry()
+    );
+
+    @Test
+    void testReadTimesOut() {
+        StepVerifier.create(policies.read(Mono.never()))
+                .expectErrorMatches(ex -> ex instanceof TimeoutException
+                        && ex.getMessage().equals("Mongo read call timed out after 100 ms"))
+                .verify(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void testStreamTimeoutOnlyGuardsFirstElement() {
+        StepVerifier.create(policies.stream(Flux.interval(Duration.ofMillis(10), Duration.ofMillis(150)).take(2)))
+                .expectNextCount(2)
+                .expectComplete()
+                .verify(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void testBulkheadRejectsCallsAboveLimit() {
+        final Sinks.One<String> pending = Sinks.one();
+        final var first = policies.write(pending.asMono()).subscribe();
+
+        StepVerifier.create(policies.write(Mono.just("second")))
+                .expectError(BulkheadFullException.class)
+                .verify();
+
+        pending.tryEmitValue("first");
+        StepVerifier.create(policies.write(Mono.just("third")))
+                .expectNext("third")
+                .expectComplete()
+                .verify();
+        first.dispose();
+    }
+
+    @Test
+    void testCircuitOpensOnFailuresButIgnoresDuplicateKeys() {
+        for (int i = 0; i < 4; i++) {
+            StepVerifier.create(policies.write(Mono.error(new DuplicateKeyException("email dup key"))))
+                    .expectError(DuplicateKeyException.class)
+                    .verify();
+        }
+        StepVerifier.create(policies.write(Mono.just("open?")))
+                .expectNext("open?")
+                .expectComplete()
+                .verify();
+
+        for (int i = 0; i < 4; i++) {
+            StepVerifier.create(policies.read(Mono.error(new DataAccessResourceFailureException("node down"))))
+                    .expectError(DataAccessResourceFailureException.class)
+                    .verify();
+        }
+        StepVerifier.create(policies.read(Mono.just("rejected")))
+                .expectError(CallNotPermittedException.class)
+                .verify();
+    }
+}
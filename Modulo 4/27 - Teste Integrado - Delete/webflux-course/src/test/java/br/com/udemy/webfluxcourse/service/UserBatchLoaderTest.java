@@ -0,0 +1,179 @@
+package br.com.udemy.webfluxcourse.service;
+
+import br.com.udemy.webfluxcourse.config.BatchLoaderProperties;
+import br.com.udemy.webfluxcourse.entity.User;
+import br.com.udemy.webfluxcourse.repository.UserStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.contextpropagation.ObservationThreadLocalAccessor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class UserBatchLoaderTest {
+
+    @Mock
+    private UserStore repository;
+
+    private static final String FIRST = "65f000000000000000000001";
+    private static final String SECOND = "65f000000000000000000002";
+    private static final String MISSING = "65f0000000000000000000ff";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private UserBatchLoader batchLoader;
+
+    @AfterEach
+    void tearDown() {
+        batchLoader.shutdown();
+    }
+
+    @Test
+    void testLoadMergesConcurrentLookupsIntoOneQuery() {
+        batchLoader = new UserBatchLoader(
+                repository, new BatchLoaderProperties(true, Duration.ofMillis(50), 100, 1), meterRegistry
+        );
+        when(repository.findAllById(any())).thenAnswer(invocation -> Flux.fromIterable(
+                invocation.<Collection<String>>getArgument(0))
+                .filter(id -> !id.equals(MISSING))
+                .map(id -> User.builder().id(id).build()));
+
+        StepVerifier.create(Flux.merge(
+                        batchLoader.load(FIRST).map(User::getId),
+                        batchLoader.load(SECOND).map(User::getId),
+                        batchLoader.load(FIRST).map(User::getId),
+                        batchLoader.load(MISSING).map(User::getId).defaultIfEmpty("empty")
+                ).collectList())
+                .expectNextMatches(ids -> ids.size() == 4
+                        && ids.containsAll(List.of(FIRST, SECOND, "empty")))
+                .expectComplete()
+                .verify();
+
+        verify(repository, times(1)).findAllById(any());
+        Assertions.assertEquals(0.04, meterRegistry.get("users.batch-loader.batch.fill.ratio").summary().max(), 0.0001);
+    }
+
+    @Test
+    void testLoadQueriesWithFirstCallerObservation() {
+        batchLoader = new UserBatchLoader(
+                repository, new BatchLoaderProperties(true, Duration.ofMillis(50), 100, 1), meterRegistry
+        );
+        ObservationRegistry observationRegistry = ObservationRegistry.create();
+        observationRegistry.observationConfig().observationHandler(context -> true);
+        Observation first = Observation.start("http.server.requests", observationRegistry);
+        Observation second = Observation.start("http.server.requests", observationRegistry);
+        AtomicReference<Object> parent = new AtomicReference<>();
+        when(repository.findAllById(any())).thenAnswer(invocation -> Flux.deferContextual(context -> {
+            parent.set(context.getOrDefault(ObservationThreadLocalAccessor.KEY, null));
+            return Flux.fromIterable(invocation.<Collection<String>>getArgument(0)).map(id -> User.builder().id(id).build());
+        }));
+
+        StepVerifier.create(Flux.merge(
+                        batchLoader.load(FIRST).contextWrite(context -> context.put(ObservationThreadLocalAccessor.KEY, first)),
+                        batchLoader.load(SECOND).contextWrite(context -> context.put(ObservationThreadLocalAccessor.KEY, second))
+                ))
+                .expectNextCount(2)
+                .expectComplete()
+                .verify();
+
+        verify(repository, times(1)).findAllById(any());
+        Assertions.assertSame(first, parent.get());
+    }
+
+    @Test
+    void testLoadFlushesWhenBatchIsFull() {
+        batchLoader = new UserBatchLoader(
+                repository, new BatchLoaderProperties(true, Duration.ofSeconds(10), 2, 1), meterRegistry
+        );
+        when(repository.findAllById(any())).thenAnswer(invocation -> Flux.fromIterable(
+                invocation.<Collection<String>>getArgument(0)).map(id -> User.builder().id(id).build()));
+
+        StepVerifier.create(Flux.merge(batchLoader.load(FIRST), batchLoader.load(SECOND)))
+                .expectNextCount(2)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+
+        verify(repository, times(1)).findAllById(any());
+    }
+
+    @Test
+    void testLoadPropagatesRepositoryError() {
+        batchLoader = new UserBatchLoader(
+                repository, new BatchLoaderProperties(true, Duration.ofMillis(10), 100, 1), meterRegistry
+        );
+        when(repository.findAllById(any())).thenReturn(Flux.error(new IllegalStateException("boom")));
+
+        StepVerifier.create(batchLoader.load(FIRST))
+                .expectError(IllegalStateException.class)
+                .verify();
+
+        StepVerifier.create(batchLoader.load(SECOND).onErrorResume(ex -> Mono.empty()))
+                .expectComplete()
+                .verify();
+    }
+
+    @Test
+    void testLoadResolvesNonCanonicalIds() {
+        batchLoader = new UserBatchLoader(
+                repository, new BatchLoaderProperties(true, Duration.ofMillis(10), 100, 1), meterRegistry
+        );
+        when(repository.findAllById(any())).thenAnswer(invocation -> Flux.fromIterable(
+                invocation.<Collection<String>>getArgument(0)).map(id -> User.builder().id(id).build()));
+
+        StepVerifier.create(Flux.merge(batchLoader.load(MISSING.toUpperCase()), batchLoader.load(MISSING)))
+                .expectNextMatches(user -> user.getId().equals(MISSING))
+                .expectNextMatches(user -> user.getId().equals(MISSING))
+                .expectComplete()
+                .verify();
+
+        verify(repository, times(1)).findAllById(List.of(MISSING));
+    }
+
+    @Test
+    void testLoadSkipsInvalidIds() {
+        batchLoader = new UserBatchLoader(
+                repository, new BatchLoaderProperties(true, Duration.ofMillis(10), 100, 1), meterRegistry
+        );
+
+        StepVerifier.create(batchLoader.load("not-an-object-id"))
+                .expectComplete()
+                .verify();
+
+        verify(repository, never()).findAllById(any());
+    }
+
+    @Test
+    void testShutdownFailsPendingLoads() {
+        batchLoader = new UserBatchLoader(
+                repository, new BatchLoaderProperties(true, Duration.ofMinutes(1), 2, 1), meterRegistry
+        );
+        when(repository.findAllById(any())).thenReturn(Flux.never());
+
+        final var dispatched = Flux.merge(batchLoader.load(FIRST), batchLoader.load(SECOND)).then().toFuture();
+        final var buffered = batchLoader.load(MISSING).toFuture();
+        batchLoader.shutdown();
+
+        StepVerifier.create(Mono.fromFuture(dispatched)).expectError(IllegalStateException.class).verify(Duration.ofSeconds(5));
+        StepVerifier.create(Mono.fromFuture(buffered)).expectError(IllegalStateException.class).verify(Duration.ofSeconds(5));
+        StepVerifier.create(batchLoader.load(FIRST)).expectError(IllegalStateException.class).verify(Duration.ofSeconds(5));
+    }
+}
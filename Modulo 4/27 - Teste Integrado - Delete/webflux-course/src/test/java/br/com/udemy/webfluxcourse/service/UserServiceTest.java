@@ -1,24 +1,57 @@
 package br.com.udemy.webfluxcourse.service;
 
+import br.com.udemy.webfluxcourse.cache.UserCache;
+import br.com.udemy.webfluxcourse.changes.UserChangeFeed;
+import br.com.udemy.webfluxcourse.config.BatchProperties;
+import br.com.udemy.webfluxcourse.config.MultiGetProperties;
+import br.com.udemy.webfluxcourse.config.PaginationProperties;
+import br.com.udemy.webfluxcourse.config.StreamProperties;
 import br.com.udemy.webfluxcourse.entity.User;
 import br.com.udemy.webfluxcourse.mapper.UserMapper;
+import br.com.udemy.webfluxcourse.metrics.UserMetrics;
+import br.com.udemy.webfluxcourse.model.UserBatchResult;
+import br.com.udemy.webfluxcourse.model.UserInsertError;
+import br.com.udemy.webfluxcourse.model.UserLookup;
+import br.com.udemy.webfluxcourse.model.UserPage;
 import br.com.udemy.webfluxcourse.model.request.UserRequest;
-import br.com.udemy.webfluxcourse.repository.UserRepository;
+import br.com.udemy.webfluxcourse.repository.UserStore;
+import br.com.udemy.webfluxcourse.service.exception.InvalidCursorException;
+import br.com.udemy.webfluxcourse.service.exception.InvalidIdException;
 import br.com.udemy.webfluxcourse.service.exception.ObjectNotFoundException;
+import br.com.udemy.webfluxcourse.service.exception.PreconditionFailedException;
+import br.com.udemy.webfluxcourse.service.exception.TooManyIdsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 import reactor.test.StepVerifier;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
 import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.IntStream;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -26,15 +59,58 @@ import static org.mockito.Mockito.when;
 @ExtendWith(MockitoExtension.class)
 class UserServiceTest {
 
+    private static final String FIRST = "65f000000000000000000001";
+    private static final String SECOND = "65f000000000000000000002";
+    private static final String THIRD = "65f000000000000000000003";
+
     @Mock
-    private UserRepository repository;
+    private UserStore repository;
 
     @Mock
     private UserMapper mapper;
 
+    @Mock
+    private UserCache cache;
+
+    @Mock
+    private UserBatchLoader batchLoader;
+
+    @Mock
+    private UserWriteBehind writeBehind;
+
+    @Mock
+    private UserChangeFeed changeFeed;
+
+    @Spy
+    private PaginationProperties paginationProperties = new PaginationProperties(20, 100);
+
+    @Spy
+    private StreamProperties streamProperties = new StreamProperties(256, 128, Duration.ofMillis(20));
+
+    @Spy
+    private BatchProperties batchProperties = new BatchProperties(2, 1);
+
+    @Spy
+    private MultiGetProperties multiGetProperties = new MultiGetProperties(3);
+
+    @Spy
+    private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private UserMetrics metrics = new UserMetrics(meterRegistry);
+
     @InjectMocks
     private UserService service;
 
+    @BeforeEach
+    void setUp() {
+        lenient().when(cache.get(anyString(), any())).thenAnswer(invocation ->
+                invocation.<Function<String, Mono<User>>>getArgument(1).apply(invocation.getArgument(0)));
+        lenient().when(cache.evict(anyString())).thenReturn(Mono.empty());
+    }
+
     @Test
     void testSave() {
         UserRequest request = new UserRequest("rafael", "rafael@mail.com", "123");
@@ -53,6 +129,56 @@ class UserServiceTest {
         verify(repository, times(1)).save(any(User.class));
     }
 
+    @Test
+    void testFindModifiedSinceFollowsTheKeysetAcrossPages() {
+        final Instant since = Instant.parse("2024-03-13T12:00:00Z");
+        final List<User> firstPage = IntStream.range(0, 256)
+                .mapToObj(i -> User.builder().id("id" + i).updatedAt(since.plusSeconds(i)).build())
+                .toList();
+        final User last = firstPage.get(255);
+        when(repository.findModifiedSince(since, null, null, 256)).thenReturn(Flux.fromIterable(firstPage));
+        when(repository.findModifiedSince(since, last.getUpdatedAt(), last.getId(), 256))
+                .thenReturn(Flux.just(User.builder().id("id256").updatedAt(last.getUpdatedAt()).build()));
+
+        StepVerifier.create(service.findModifiedSince(since).map(User::getId).collectList())
+                .expectNextMatches(ids -> ids.size() == 257 && ids.get(256).equals("id256"))
+                .expectComplete()
+                .verify();
+
+        verify(repository, times(2)).findModifiedSince(eq(since), any(), any(), eq(256));
+    }
+
+    @Test
+    void testSaveAll() {
+        when(mapper.toEntity(any(UserRequest.class))).thenAnswer(invocation -> User.builder().build());
+        when(repository.insertAll(any()))
+                .thenReturn(Mono.just(List.of()))
+                .thenReturn(Mono.just(List.of(new UserInsertError(
+                        0, true, "E11000 duplicate key error collection: user index: email dup key"
+                ))));
+
+        Flux<UserBatchResult> result = service.saveAll(Flux.just(
+                new UserRequest("rafael", "rafael@mail.com", "123"),
+                new UserRequest(" rafael", "rafael@mail.com", "123"),
+                new UserRequest("rafael", "rafael@mail.com", "123")
+        ));
+
+        StepVerifier.create(result)
+                .expectNextMatches(item -> item.index() == 0
+                        && item.status() == UserBatchResult.Status.CREATED
+                        && item.user().getId() != null)
+                .expectNextMatches(item -> item.index() == 1
+                        && item.status() == UserBatchResult.Status.INVALID
+                        && item.message().startsWith("name:"))
+                .expectNextMatches(item -> item.index() == 2
+                        && item.status() == UserBatchResult.Status.DUPLICATE
+                        && item.message().equals("E-mail already registered"))
+                .expectComplete()
+                .verify();
+
+        verify(repository, times(2)).insertAll(any());
+    }
+
     @Test
     void testFindById() {
         when(repository.findById(anyString())).thenReturn(Mono.just(User.builder().id("123").build()));
@@ -68,9 +194,88 @@ class UserServiceTest {
         verify(repository, times(1)).findById(anyString());
     }
 
+    @Test
+    void testFindByIdSharesInFlightLookup() {
+        Sinks.Empty<Void> release = Sinks.empty();
+        when(repository.findById(anyString()))
+                .thenReturn(release.asMono().then(Mono.just(User.builder().id("123").build())));
+
+        Flux<User> result = Flux.range(0, 100).flatMap(i -> service.findById("123"));
+
+        StepVerifier.create(result)
+                .then(release::tryEmitEmpty)
+                .expectNextCount(100)
+                .expectComplete()
+                .verify();
+
+        verify(repository, times(1)).findById(anyString());
+    }
+
+    @Test
+    void testFindByIdSharesInFlightNotFound() {
+        Sinks.Empty<Void> release = Sinks.empty();
+        when(repository.findById(anyString())).thenReturn(release.asMono().then(Mono.<User>empty()));
+
+        Flux<Throwable> result = Flux.range(0, 100)
+                .flatMap(i -> service.findById("123").then(Mono.<Throwable>empty()).onErrorResume(Mono::just));
+
+        StepVerifier.create(result)
+                .then(release::tryEmitEmpty)
+                .thenConsumeWhile(ex -> ex instanceof ObjectNotFoundException)
+                .expectComplete()
+                .verify();
+
+        verify(repository, times(1)).findById(anyString());
+    }
+
+    @Test
+    void testFindByIdDoesNotKeepCompletedLookup() {
+        when(repository.findById(anyString())).thenReturn(Mono.just(User.builder().id("123").build()));
+
+        service.findById("123").block();
+        service.findById("123").block();
+
+        verify(repository, times(2)).findById(anyString());
+    }
+
+    @Test
+    void testFindAllById() {
+        when(repository.findAllById(any())).thenReturn(Flux.just(User.builder().id(SECOND).build()));
+
+        Flux<UserLookup> result = service.findAllById(List.of(FIRST, SECOND, SECOND.toUpperCase(), THIRD));
+
+        StepVerifier.create(result)
+                .expectNextMatches(lookup -> lookup.id().equals(SECOND) && lookup.user() != null)
+                .expectNextMatches(lookup -> lookup.id().equals(FIRST) && lookup.user() == null)
+                .expectNextMatches(lookup -> lookup.id().equals(THIRD) && lookup.user() == null)
+                .expectComplete()
+                .verify();
+
+        verify(repository, times(1)).findAllById(List.of(FIRST, SECOND, THIRD));
+    }
+
+    @Test
+    void testFindAllByIdWithTooManyIds() {
+        StepVerifier.create(service.findAllById(List.of(FIRST, SECOND, THIRD, "65f000000000000000000004")))
+                .expectError(TooManyIdsException.class)
+                .verify();
+
+        verify(repository, never()).findAllById(any());
+    }
+
+    @Test
+    void testFindAllByIdWithInvalidIds() {
+        StepVerifier.create(service.findAllById(List.of(FIRST, "not-an-object-id")))
+                .expectErrorMatches(ex -> ex instanceof InvalidIdException
+                        && ex.getMessage().equals("Invalid ids: [not-an-object-id]"))
+                .verify();
+
+        verify(repository, never()).findAllById(any());
+    }
+
     @Test
     void testFindAll() {
-        when(repository.findAll()).thenReturn(Flux.just(User.builder().build()));
+        when(repository.findAll(anyInt())).thenReturn(Flux.just(User.builder().build()));
 
         Flux<User> result = service.findAll();
 
@@ -79,7 +284,54 @@ class UserServiceTest {
                 .expectComplete()
                 .verify();
 
-        verify(repository, times(1)).findAll();
+        verify(repository, times(1)).findAll(256);
+    }
+
+    @Test
+    void testFindAllPage() {
+        final var first = "65f1c0a2e4b0a1b2c3d4e5f1";
+        final var second = "65f1c0a2e4b0a1b2c3d4e5f2";
+        final var third = "65f1c0a2e4b0a1b2c3d4e5f3";
+        when(repository.findAllAfter(isNull(), eq(3))).thenReturn(Flux.just(
+                User.builder().id(first).build(),
+                User.builder().id(second).build(),
+                User.builder().id(third).build()
+        ));
+
+        Mono<UserPage> result = service.findAll(null, 2);
+
+        StepVerifier.create(result)
+                .expectNextMatches(page -> page.content().size() == 2 && page.nextCursor() != null)
+                .expectComplete()
+                .verify();
+
+        when(repository.findAllAfter(eq(second), eq(3))).thenReturn(Flux.just(User.builder().id(third).build()));
+
+        StepVerifier.create(result.flatMap(page -> service.findAll(page.nextCursor(), 2)))
+                .expectNextMatches(page -> page.content().size() == 1
+                        && Objects.equals(page.content().get(0).getId(), third)
+                        && page.nextCursor() == null)
+                .expectComplete()
+                .verify();
+    }
+
+    @Test
+    void testFindAllPageLimitIsCappedByMaxLimit() {
+        when(repository.findAllAfter(isNull(), anyInt())).thenReturn(Flux.empty());
+
+        StepVerifier.create(service.findAll(null, 1_000))
+                .expectNextMatches(page -> page.content().isEmpty() && page.nextCursor() == null)
+                .expectComplete()
+                .verify();
+
+        verify(repository, times(1)).findAllAfter(isNull(), eq(101));
+    }
+
+    @Test
+    void testFindAllPageWithInvalidCursor() {
+        StepVerifier.create(service.findAll("not-a-cursor", 10))
+                .expectError(InvalidCursorException.class)
+                .verify();
     }
 
     @Test
@@ -87,19 +339,73 @@ class UserServiceTest {
         UserRequest request = new UserRequest("rafael", "rafael@mail.com", "123");
         User entity = User.builder().build();
 
-        when(mapper.toEntity(any(UserRequest.class), any(User.class))).thenReturn(entity);
-        when(repository.findById(anyString())).thenReturn(Mono.just(entity));
-        when(repository.save(any(User.class))).thenReturn(Mono.just(entity));
+        when(mapper.toEntity(any(UserRequest.class))).thenReturn(entity);
+        when(repository.findAndModify(anyString(), isNull(), any(User.class))).thenReturn(Mono.just(entity));
 
-        Mono<User> result = service.update("123", request);
+        Mono<User> result = service.update("123", null, request);
 
         StepVerifier.create(result)
                 .expectNextMatches(user -> user.getClass() == User.class)
                 .expectComplete()
                 .verify();
 
-        verify(repository, times(1)).save(any(User.class));
-        verify(repository, times(1)).findById(anyString());
+        InOrder order = inOrder(cache, repository);
+        order.verify(cache).evict("123");
+        order.verify(repository).findAndModify(anyString(), isNull(), any(User.class));
+        order.verify(cache).evict("123");
+        verify(repository, never()).findById(anyString());
+        verify(repository, never()).save(any(User.class));
+    }
+
+    @Test
+    void testUpdateDropsLookupStartedBeforeTheWrite() {
+        Sinks.One<User> stale = Sinks.one();
+        Sinks.One<User> fresh = Sinks.one();
+        when(repository.findById(anyString())).thenReturn(stale.asMono()).thenReturn(fresh.asMono());
+        when(mapper.toEntity(any(UserRequest.class))).thenReturn(User.builder().name("renamed").build());
+        when(repository.findAndModify(anyString(), isNull(), any(User.class)))
+                .thenReturn(Mono.just(User.builder().id("123").name("renamed").build()));
+
+        final var before = service.findById("123").toFuture();
+        service.update("123", null, new UserRequest("renamed", null, null)).block();
+        final var after = service.findById("123").toFuture();
+
+        stale.tryEmitValue(User.builder().id("123").name("rafael").build());
+        final var joined = service.findById("123").toFuture();
+        fresh.tryEmitValue(User.builder().id("123").name("renamed").build());
+
+        Assertions.assertEquals("rafael", before.join().getName());
+        Assertions.assertEquals("renamed", after.join().getName());
+        Assertions.assertEquals("renamed", joined.join().getName());
+        verify(repository, times(2)).findById(anyString());
+    }
+
+    @Test
+    void testUpdateNotFound() {
+        UserRequest request = new UserRequest("rafael", null, null);
+
+        when(mapper.toEntity(any(UserRequest.class))).thenReturn(User.builder().name("rafael").build());
+        when(repository.findAndModify(anyString(), isNull(), any(User.class))).thenReturn(Mono.empty());
+
+        StepVerifier.create(service.update("123", null, request))
+                .expectError(ObjectNotFoundException.class)
+                .verify();
+    }
+
+    @Test
+    void testUpdateWithVersionConflict() {
+        UserRequest request = new UserRequest("rafael", null, null);
+
+        when(mapper.toEntity(any(UserRequest.class))).thenReturn(User.builder().name("rafael").build());
+        when(repository.findAndModify(anyString(), eq(3L), any(User.class))).thenReturn(Mono.empty());
+
+        StepVerifier.create(service.update("123", 3L, request))
+                .expectError(PreconditionFailedException.class)
+                .verify();
+
+        verify(repository, times(1)).findAndModify(anyString(), eq(3L), any(User.class));
+        verify(repository, never()).findById(anyString());
+        verify(cache, times(1)).evict("123");
     }
 
     @Test
@@ -114,7 +420,31 @@ class UserServiceTest {
                 .expectComplete()
                 .verify();
 
-        verify(repository, times(1)).findAndRemove(anyString());
+        InOrder order = inOrder(cache, repository);
+        order.verify(cache).evict("123");
+        order.verify(repository).findAndRemove(anyString());
+        order.verify(cache).evict("123");
+    }
+
+    @Test
+    void testMetricsRecordOutcomes() {
+        when(repository.findById(anyString()))
+                .thenReturn(Mono.just(User.builder().id("123").build()))
+                .thenReturn(Mono.empty());
+
+        service.findById("123").block();
+        StepVerifier.create(service.findById("456"))
+                .expectError(ObjectNotFoundException.class)
+                .verify();
+
+        Assertions.assertEquals(1.0, meterRegistry.get("users.service.outcomes")
+                .tags("operation", "findById", "outcome", UserMetrics.SUCCESS).counter().count());
+        Assertions.assertEquals(1.0, meterRegistry.get("users.service.outcomes")
+                .tags("operation", "findById", "outcome", UserMetrics.NOT_FOUND).counter().count());
+        Assertions.assertEquals(0.0, meterRegistry.get("users.service.active")
+                .tags("operation", "findById").gauge().value());
+        Assertions.assertEquals(2L, meterRegistry.get("users.service.flow.duration")
+                .tags("operation", "findById").timers().stream().mapToLong(timer -> timer.count()).sum());
     }
 
     @Test
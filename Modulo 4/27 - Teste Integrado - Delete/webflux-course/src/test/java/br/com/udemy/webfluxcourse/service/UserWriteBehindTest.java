@@ -0,0 +1,157 @@
+package br.com.udemy.webfluxcourse.service;
+
+import br.com.udemy.webfluxcourse.config.StoreProperties;
+import br.com.udemy.webfluxcourse.config.WriteBehindProperties;
+import br.com.udemy.webfluxcourse.entity.User;
+import br.com.udemy.webfluxcourse.entity.UserConflict;
+import br.com.udemy.webfluxcourse.journal.UserJournal;
+import br.com.udemy.webfluxcourse.metrics.UserMetrics;
+import br.com.udemy.webfluxcourse.repository.InMemoryUserStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+
+class UserWriteBehindTest {
+
+    @TempDir
+    Path directory;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final InMemoryUserStore store = new InMemoryUserStore(
+            new StoreProperties("memory", 8, 1000, 256), new UserMetrics(meterRegistry)
+    );
+
+    private UserWriteBehind writeBehind;
+
+    @AfterEach
+    void tearDown() {
+        writeBehind.shutdown();
+    }
+
+    @Test
+    void testSubmitAcknowledgesBeforeTheUserIsFlushed() throws IOException {
+        writeBehind = writeBehind(Duration.ofMillis(200));
+
+        final User accepted = writeBehind.submit(user("rafael", "rafael@mail.com")).block();
+
+        Assertions.assertNotNull(accepted.getId());
+        Assertions.assertNull(store.findById(accepted.getId()).block());
+        awaitStored(accepted.getId());
+        Assertions.assertEquals(1.0, meterRegistry.get("users.write-behind.flushed").tag("outcome", "created").counter().count());
+    }
+
+    @Test
+    void testSubmitJournalsACopyOfTheCallersUser() throws IOException {
+        writeBehind = writeBehind(Duration.ofMillis(10));
+        final User request = user("rafael", "rafael@mail.com");
+
+        final User accepted = writeBehind.submit(request).block();
+        awaitStored(accepted.getId());
+
+        Assertions.assertNotSame(request, accepted);
+        Assertions.assertNull(request.getId());
+        Assertions.assertNull(request.getVersion());
+        Assertions.assertNull(request.getCreatedAt());
+        Assertions.assertNull(request.getUpdatedAt());
+        Assertions.assertNull(accepted.getUpdatedAt());
+    }
+
+    @Test
+    void testConcurrentSubmittersNeverJournalMoreThanMaxPending() throws IOException {
+        writeBehind = writeBehind(Duration.ofMinutes(1), 5);
+
+        final List<User> accepted = Flux.range(0, 50)
+                .flatMap(i -> writeBehind.submit(user("user-" + i, "user-" + i + "@mail.com"))
+                        .subscribeOn(Schedulers.parallel()))
+                .collectList()
+                .block(Duration.ofSeconds(10));
+
+        Assertions.assertEquals(50, accepted.size());
+        Assertions.assertEquals(5.0, meterRegistry.get("users.write-behind.accepted").tag("mode", "journal").counter().count());
+        Assertions.assertEquals(45.0, meterRegistry.get("users.write-behind.accepted").tag("mode", "write-through").counter().count());
+        Assertions.assertEquals(5.0, meterRegistry.get("users.write-behind.pending").gauge().value());
+    }
+
+    @Test
+    void testDuplicateEmailsAreRecordedAsConflicts() throws IOException {
+        writeBehind = writeBehind(Duration.ofMillis(10));
+
+        final User first = writeBehind.submit(user("rafael", "same@mail.com")).block();
+        final User second = writeBehind.submit(user("other", "same@mail.com")).block();
+        awaitStored(first.getId());
+
+        StepVerifier.create(awaitConflicts("same@mail.com"))
+                .expectNextMatches(conflicts -> conflicts.size() == 1
+                        && conflicts.get(0).getId().equals(second.getId())
+                        && conflicts.get(0).getReason().equals("E-mail already registered"))
+                .expectComplete()
+                .verify();
+    }
+
+    @Test
+    void testUnflushedEntriesAreReplayedAfterARestart() throws IOException {
+        final User alreadyStored = store.save(User.builder()
+                .id("65f000000000000000000001").name("stored").email("stored@mail.com").password("123").build()).block();
+        try (UserJournal journal = UserJournal.open(directory, 4096, false)) {
+            journal.append(payload(alreadyStored.getId(), "stored", "stored@mail.com"));
+            journal.append(payload("65f000000000000000000002", "crashed", "crashed@mail.com"));
+        }
+
+        writeBehind = writeBehind(Duration.ofMillis(10));
+
+        awaitStored("65f000000000000000000002");
+        Assertions.assertEquals(List.of(), store.findConflicts(null).collectList().block());
+        Assertions.assertEquals(1.0, meterRegistry.get("users.write-behind.flushed").tag("outcome", "replayed").counter().count());
+    }
+
+    private UserWriteBehind writeBehind(final Duration flushInterval) throws IOException {
+        return writeBehind(flushInterval, 1000);
+    }
+
+    private UserWriteBehind writeBehind(final Duration flushInterval, final int maxPending) throws IOException {
+        return new UserWriteBehind(store, new WriteBehindProperties(
+                true, directory.toString(), DataSize.ofKilobytes(4), false, 100, flushInterval,
+                maxPending, 1, Duration.ofMillis(10), Duration.ofSeconds(5)
+        ), new ObjectMapper().findAndRegisterModules(), meterRegistry);
+    }
+
+    private void awaitStored(final String id) {
+        StepVerifier.create(store.findById(id)
+                        .repeatWhenEmpty(attempts -> attempts.delayElements(Duration.ofMillis(10)).take(200)))
+                .expectNextMatches(user -> Objects.equals(user.getId(), id))
+                .expectComplete()
+                .verify();
+    }
+
+    private Mono<List<UserConflict>> awaitConflicts(final String email) {
+        return writeBehind.findConflicts(email)
+                .collectList()
+                .filter(conflicts -> !conflicts.isEmpty())
+                .repeatWhenEmpty(attempts -> attempts.delayElements(Duration.ofMillis(10)).take(200));
+    }
+
+    private static byte[] payload(final String id, final String name, final String email) {
+        return String.format("{\"id\":\"%s\",\"name\":\"%s\",\"email\":\"%s\",\"password\":\"123\"}", id, name, email)
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static User user(final String name, final String email) {
+        return User.builder().name(name).email(email).password("123").build();
+    }
+}